@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -9,12 +10,37 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("loadtest") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testImplementation("nl.jqno.equalsverifier:equalsverifier:3.15.4")
+    testAnnotationProcessor(project(":processor"))
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    systemProperty("io.github.pr0methean.invoke.metrics", "true")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// Pass harness options as -PloadTestArgs="--managers=default --seconds=30"; see LoadHarness for the rest
+tasks.register<JavaExec>("loadTest") {
+    description = "Runs the load harness against each cache manager."
+    group = "verification"
+    classpath = sourceSets["loadtest"].runtimeClasspath
+    mainClass.set("io.github.pr0methean.invoke.LoadHarness")
+    systemProperty("io.github.pr0methean.invoke.metrics", "true")
+    args((project.findProperty("loadTestArgs") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList())
+}
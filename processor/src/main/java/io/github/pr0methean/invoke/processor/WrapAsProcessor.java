@@ -0,0 +1,311 @@
+package io.github.pr0methean.invoke.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+@SupportedAnnotationTypes(WrapAsProcessor.WRAP_AS)
+public class WrapAsProcessor extends AbstractProcessor {
+    static final String WRAP_AS = "io.github.pr0methean.invoke.WrapAs";
+    // Must match PrecompiledLambdaFactory.CLASS_NAME_SUFFIX
+    private static final String CLASS_NAME_SUFFIX = "$$WrapAsFactories";
+    private static final String PARAMETERS = "io.github.pr0methean.invoke.LambdaMetafactoryWrapper.Parameters";
+    private static final String FACTORY = "io.github.pr0methean.invoke.PrecompiledLambdaFactory";
+
+    private record Target(ExecutableElement implementation, TypeElement functionalInterface, ExecutableElement sam,
+                          int samArity) {}
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final TypeElement wrapAs = processingEnv.getElementUtils().getTypeElement(WRAP_AS);
+        if (wrapAs == null) {
+            return false;
+        }
+        final Map<TypeElement, List<Target>> targetsByClass = new LinkedHashMap<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(wrapAs)) {
+            final ExecutableElement implementation = (ExecutableElement) element;
+            final TypeElement declaringClass = (TypeElement) implementation.getEnclosingElement();
+            if (!checkAccessible(implementation, declaringClass)) {
+                continue;
+            }
+            for (final TypeElement functionalInterface : getFunctionalInterfaces(implementation, wrapAs)) {
+                final ExecutableElement sam = findSingleAbstractMethod(functionalInterface);
+                if (sam == null) {
+                    error(implementation, functionalInterface + " doesn't have exactly one abstract method");
+                    continue;
+                }
+                if (!sam.getTypeParameters().isEmpty()) {
+                    error(implementation, "Generic functional interface methods aren't supported");
+                    continue;
+                }
+                final int samArity = sam.getParameters().size();
+                if (samArity > totalArity(implementation)) {
+                    error(implementation, "Has too few parameters to implement " + functionalInterface);
+                    continue;
+                }
+                targetsByClass.computeIfAbsent(declaringClass, c -> new ArrayList<>())
+                        .add(new Target(implementation, functionalInterface, sam, samArity));
+            }
+        }
+        targetsByClass.forEach(this::writeFactoryClass);
+        return true;
+    }
+
+    private boolean checkAccessible(final ExecutableElement implementation, final TypeElement declaringClass) {
+        if (implementation.getModifiers().contains(Modifier.PRIVATE)) {
+            error(implementation, "@WrapAs members must not be private");
+            return false;
+        }
+        Element enclosing = declaringClass;
+        while (enclosing instanceof TypeElement type) {
+            if (type.getModifiers().contains(Modifier.PRIVATE) || type.getNestingKind() == NestingKind.LOCAL
+                    || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                error(implementation, "@WrapAs members must not be in private, local or anonymous classes");
+                return false;
+            }
+            if (implementation.getKind() == ElementKind.CONSTRUCTOR && type == declaringClass
+                    && (type.getModifiers().contains(Modifier.ABSTRACT)
+                    || (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                    && type.getKind() == ElementKind.CLASS))) {
+                error(implementation, "@WrapAs constructors must belong to concrete, non-inner classes");
+                return false;
+            }
+            enclosing = type.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private List<TypeElement> getFunctionalInterfaces(final ExecutableElement implementation,
+                                                      final TypeElement wrapAs) {
+        final List<TypeElement> result = new ArrayList<>();
+        for (final AnnotationMirror mirror : implementation.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(wrapAs)) {
+                continue;
+            }
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                    continue;
+                }
+                final Object value = entry.getValue().getValue();
+                final List<?> values = (value instanceof List<?> list) ? list : List.of(entry.getValue());
+                for (final Object item : values) {
+                    final TypeMirror type = (TypeMirror) ((AnnotationValue) item).getValue();
+                    final Element typeElement = processingEnv.getTypeUtils().asElement(type);
+                    if (typeElement == null || typeElement.getKind() != ElementKind.INTERFACE) {
+                        error(implementation, type + " is not an interface");
+                    } else {
+                        result.add((TypeElement) typeElement);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private ExecutableElement findSingleAbstractMethod(final TypeElement functionalInterface) {
+        final TypeElement object = processingEnv.getElementUtils().getTypeElement("java.lang.Object");
+        final List<ExecutableElement> objectMethods = ElementFilter.methodsIn(object.getEnclosedElements());
+        ExecutableElement result = null;
+        for (final ExecutableElement method
+                : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(functionalInterface))) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT) || objectMethods.stream().anyMatch(objectMethod ->
+                    processingEnv.getElementUtils().overrides(method, objectMethod, functionalInterface))) {
+                continue;
+            }
+            if (result != null) {
+                return null;
+            }
+            result = method;
+        }
+        return result;
+    }
+
+    private static boolean isInstanceMethod(final ExecutableElement implementation) {
+        return implementation.getKind() == ElementKind.METHOD
+                && !implementation.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private static int totalArity(final ExecutableElement implementation) {
+        return implementation.getParameters().size() + (isInstanceMethod(implementation) ? 1 : 0);
+    }
+
+    private String erasedName(final TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void writeFactoryClass(final TypeElement declaringClass, final List<Target> targets) {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(declaringClass);
+        final String packageName = packageElement.getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(declaringClass).toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + CLASS_NAME_SUFFIX;
+        final String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, declaringClass);
+            try (Writer writer = file.openWriter(); PrintWriter out = new PrintWriter(writer)) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+                out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+                out.println("public final class " + simpleName + " implements " + FACTORY + " {");
+                out.println("    @Override");
+                out.println("    public <T> T wrap(java.lang.reflect.Executable implementation, " + PARAMETERS
+                        + "<T> parameters) {");
+                out.println("        final java.util.List<Object> captured = parameters.capturedParameters();");
+                for (int i = 0; i < targets.size(); i++) {
+                    writeDispatch(out, declaringClass, targets.get(i), i);
+                }
+                out.println("        return null;");
+                out.println("    }");
+                for (int i = 0; i < targets.size(); i++) {
+                    writeLambdaClass(out, declaringClass, targets.get(i), "Lambda" + i);
+                }
+                out.println("}");
+            }
+        } catch (final IOException e) {
+            error(declaringClass, "Can't write " + qualifiedName + ": " + e);
+        }
+    }
+
+    // Types of the implementation's arguments: the receiver, if any, then the declared parameters
+    private List<String> argumentTypes(final TypeElement declaringClass, final ExecutableElement implementation) {
+        final List<String> argumentTypes = new ArrayList<>();
+        if (isInstanceMethod(implementation)) {
+            argumentTypes.add(erasedName(declaringClass.asType()));
+        }
+        for (final VariableElement parameter : implementation.getParameters()) {
+            argumentTypes.add(erasedName(parameter.asType()));
+        }
+        return argumentTypes;
+    }
+
+    private void writeDispatch(final PrintWriter out, final TypeElement declaringClass, final Target target,
+                               final int index) {
+        final ExecutableElement implementation = target.implementation;
+        final int capturedCount = totalArity(implementation) - target.samArity;
+        final StringJoiner matchArgs = new StringJoiner(", ");
+        matchArgs.add("implementation");
+        matchArgs.add('"' + (implementation.getKind() == ElementKind.CONSTRUCTOR
+                ? "<init>" : implementation.getSimpleName().toString()) + '"');
+        for (final VariableElement parameter : implementation.getParameters()) {
+            matchArgs.add(erasedName(parameter.asType()) + ".class");
+        }
+        out.println("        if (parameters.functionalInterface() == "
+                + erasedName(target.functionalInterface.asType()) + ".class");
+        out.println("                && captured.size() == " + capturedCount);
+        out.println("                && " + FACTORY + ".matches(" + matchArgs + ")) {");
+        if (capturedCount == 0) {
+            // Like LambdaMetafactory, reuse one instance when nothing is captured
+            out.println("            return (T) Lambda" + index + ".INSTANCE;");
+        } else {
+            final List<String> argumentTypes = argumentTypes(declaringClass, implementation);
+            final StringJoiner capturedArgs = new StringJoiner(", ");
+            for (int i = 0; i < capturedCount; i++) {
+                capturedArgs.add("(" + argumentTypes.get(i) + ") captured.get(" + i + ")");
+            }
+            out.println("            return (T) new Lambda" + index + "(" + capturedArgs + ");");
+        }
+        out.println("        }");
+    }
+
+    private void writeLambdaClass(final PrintWriter out, final TypeElement declaringClass, final Target target,
+                                  final String className) {
+        final ExecutableElement implementation = target.implementation;
+        final int capturedCount = totalArity(implementation) - target.samArity;
+        final List<String> argumentTypes = argumentTypes(declaringClass, implementation);
+        final String interfaceName = erasedName(target.functionalInterface.asType());
+        // Raw interface, so that its abstract method's signature is erased
+        final ExecutableType samType = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(
+                (DeclaredType) processingEnv.getTypeUtils().erasure(target.functionalInterface.asType()), target.sam);
+        out.println();
+        out.println("    private static final class " + className + " implements " + interfaceName + " {");
+        if (capturedCount == 0) {
+            out.println("        static final " + className + " INSTANCE = new " + className + "();");
+        }
+        final StringJoiner constructorParameters = new StringJoiner(", ");
+        for (int i = 0; i < capturedCount; i++) {
+            out.println("        private final " + argumentTypes.get(i) + " c" + i + ";");
+            constructorParameters.add(argumentTypes.get(i) + " c" + i);
+        }
+        out.println();
+        out.println("        " + className + "(" + constructorParameters + ") {");
+        for (int i = 0; i < capturedCount; i++) {
+            out.println("            this.c" + i + " = c" + i + ";");
+        }
+        out.println("        }");
+        out.println();
+        final StringJoiner samParameters = new StringJoiner(", ");
+        for (int i = 0; i < samType.getParameterTypes().size(); i++) {
+            samParameters.add(erasedName(samType.getParameterTypes().get(i)) + " a" + i);
+        }
+        final List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < argumentTypes.size(); i++) {
+            arguments.add(i < capturedCount ? "c" + i
+                    : "((" + argumentTypes.get(i) + ") a" + (i - capturedCount) + ")");
+        }
+        final String invocation;
+        if (implementation.getKind() == ElementKind.CONSTRUCTOR) {
+            invocation = "new " + erasedName(declaringClass.asType()) + "(" + String.join(", ", arguments) + ")";
+        } else if (isInstanceMethod(implementation)) {
+            invocation = arguments.getFirst() + "." + implementation.getSimpleName() + "("
+                    + String.join(", ", arguments.subList(1, arguments.size())) + ")";
+        } else {
+            invocation = erasedName(declaringClass.asType()) + "." + implementation.getSimpleName() + "("
+                    + String.join(", ", arguments) + ")";
+        }
+        final String returnType = erasedName(samType.getReturnType());
+        final String statement = ("void".equals(returnType) ? "" : "return ") + invocation + ";";
+        out.println("        @Override");
+        out.println("        public " + returnType + " " + target.sam.getSimpleName() + "(" + samParameters + ") {");
+        if (implementation.getThrownTypes().isEmpty()) {
+            out.println("            " + statement);
+        } else {
+            // LambdaMetafactory doesn't check exceptions either
+            out.println("            try {");
+            out.println("                " + statement);
+            out.println("            } catch (Throwable t) {");
+            out.println("                throw " + FACTORY + ".sneakyThrow(t);");
+            out.println("            }");
+        }
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Objects;
+
+public class BenchmarkTargets {
+    private final int base;
+
+    public BenchmarkTargets(final int base) {
+        this.base = base;
+    }
+
+    public static int add(final int a, final int b) {
+        return a + b;
+    }
+
+    public int addToBase(final int a) {
+        return base + a;
+    }
+
+    public static int hashAll(final Object... values) {
+        return Objects.hash(values);
+    }
+
+    public interface Marker {}
+
+    static MethodHandles.Lookup lookup() {
+        return MethodHandles.lookup();
+    }
+
+    static Method method(final String name, final Class<?>... parameterTypes) {
+        try {
+            return BenchmarkTargets.class.getDeclaredMethod(name, parameterTypes);
+        } catch (final NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
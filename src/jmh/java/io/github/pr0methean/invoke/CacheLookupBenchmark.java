@@ -0,0 +1,148 @@
+package io.github.pr0methean.invoke;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CacheLookupBenchmark {
+    @Param({"default", "noop"})
+    public String cacheManager;
+
+    private LambdaMetafactoryWrapper wrapper;
+    private Method add;
+    private Method addToBase;
+    private Method hashAll;
+    private LambdaMetafactoryWrapper.Parameters<IntBinaryOperator> nonCapturing;
+    private LambdaMetafactoryWrapper.Parameters<IntUnaryOperator> capturing;
+    private LambdaMetafactoryWrapper.Parameters<IntSupplier> varargs;
+    private LambdaMetafactoryWrapper.Parameters<IntBinaryOperator> serializable;
+    private LambdaMetafactoryWrapper.Parameters<IntBinaryOperator> marker;
+
+    @Setup
+    public void setUp() {
+        wrapper = new LambdaMetafactoryWrapper(BenchmarkTargets.lookup(), switch (cacheManager) {
+            case "default" -> LambdaMetafactoryDefaultCacheManager.getInstance();
+            case "noop" -> LambdaMetafactoryNoopCacheManager.getInstance();
+            default -> throw new IllegalArgumentException(cacheManager);
+        });
+        add = BenchmarkTargets.method("add", int.class, int.class);
+        addToBase = BenchmarkTargets.method("addToBase", int.class);
+        hashAll = BenchmarkTargets.method("hashAll", Object[].class);
+        nonCapturing = LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                .build();
+        capturing = LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                .addCapturedParameter(new BenchmarkTargets(42))
+                .build();
+        varargs = LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                .addCapturedParameter("Hello")
+                .addCapturedParameter("world")
+                .build();
+        serializable = LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                .serializable(true)
+                .build();
+        marker = LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                .addMarkerInterface(BenchmarkTargets.Marker.class)
+                .addMarkerInterface(Serializable.class)
+                .build();
+        // Warm the cache so that only hits are measured
+        nonCapturing();
+        capturing();
+        varargs();
+        serializable();
+        marker();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IntBinaryOperator nonCapturing() {
+        return wrapper.wrap(add, nonCapturing);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IntBinaryOperator nonCapturing4Threads() {
+        return wrapper.wrap(add, nonCapturing);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IntBinaryOperator nonCapturingMaxThreads() {
+        return wrapper.wrap(add, nonCapturing);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IntUnaryOperator capturing() {
+        return wrapper.wrap(addToBase, capturing);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IntUnaryOperator capturing4Threads() {
+        return wrapper.wrap(addToBase, capturing);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IntUnaryOperator capturingMaxThreads() {
+        return wrapper.wrap(addToBase, capturing);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IntSupplier varargs() {
+        return wrapper.wrap(hashAll, varargs);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IntSupplier varargsMaxThreads() {
+        return wrapper.wrap(hashAll, varargs);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IntBinaryOperator serializable() {
+        return wrapper.wrap(add, serializable);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IntBinaryOperator serializableMaxThreads() {
+        return wrapper.wrap(add, serializable);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IntBinaryOperator marker() {
+        return wrapper.wrap(add, marker);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IntBinaryOperator markerMaxThreads() {
+        return wrapper.wrap(add, marker);
+    }
+}
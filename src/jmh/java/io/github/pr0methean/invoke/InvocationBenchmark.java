@@ -0,0 +1,121 @@
+package io.github.pr0methean.invoke;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InvocationBenchmark {
+    private static final MethodHandle CONSTANT_HANDLE;
+
+    static {
+        try {
+            CONSTANT_HANDLE = BenchmarkTargets.lookup().unreflect(BenchmarkTargets.method("add", int.class, int.class));
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int a = 17;
+    private int b = 25;
+    private Method method;
+    private MethodHandle handle;
+    private IntBinaryOperator wrapped;
+    private IntBinaryOperator handWritten;
+    private IntUnaryOperator capturing;
+    private IntSupplier varargs;
+    private IntBinaryOperator serializable;
+    private IntBinaryOperator marker;
+
+    @Setup
+    public void setUp() {
+        final LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(BenchmarkTargets.lookup());
+        method = BenchmarkTargets.method("add", int.class, int.class);
+        handle = CONSTANT_HANDLE;
+        wrapped = wrapper.wrap(method, IntBinaryOperator.class);
+        handWritten = BenchmarkTargets::add;
+        capturing = wrapper.wrap(BenchmarkTargets.method("addToBase", int.class),
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .addCapturedParameter(new BenchmarkTargets(42))
+                        .build());
+        varargs = wrapper.wrap(BenchmarkTargets.method("hashAll", Object[].class),
+                LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                        .addCapturedParameter("Hello")
+                        .addCapturedParameter("world")
+                        .build());
+        serializable = wrapper.wrap(method,
+                LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                        .serializable(true)
+                        .build());
+        marker = wrapper.wrap(method,
+                LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                        .addMarkerInterface(BenchmarkTargets.Marker.class)
+                        .addMarkerInterface(Serializable.class)
+                        .build());
+    }
+
+    @Benchmark
+    public int wrappedLambda() {
+        return wrapped.applyAsInt(a, b);
+    }
+
+    @Benchmark
+    public int handWrittenLambda() {
+        return handWritten.applyAsInt(a, b);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        return method.invoke(null, a, b);
+    }
+
+    @Benchmark
+    public int methodHandleInvokeExact() throws Throwable {
+        return (int) handle.invokeExact(a, b);
+    }
+
+    @Benchmark
+    public int constantMethodHandleInvokeExact() throws Throwable {
+        return (int) CONSTANT_HANDLE.invokeExact(a, b);
+    }
+
+    @Benchmark
+    public int capturingLambda() {
+        return capturing.applyAsInt(a);
+    }
+
+    @Benchmark
+    public int varargsLambda() {
+        return varargs.getAsInt();
+    }
+
+    @Benchmark
+    public int serializableLambda() {
+        return serializable.applyAsInt(a, b);
+    }
+
+    @Benchmark
+    public int markerInterfaceLambda() {
+        return marker.applyAsInt(a, b);
+    }
+}
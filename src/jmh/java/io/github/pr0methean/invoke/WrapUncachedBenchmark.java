@@ -0,0 +1,79 @@
+package io.github.pr0methean.invoke;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+// Every operation spins a new class, so measure single shots in batches rather than letting metaspace grow unbounded
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = 200)
+@Measurement(iterations = 10, batchSize = 200)
+@Fork(2)
+@State(Scope.Thread)
+public class WrapUncachedBenchmark {
+    private LambdaMetafactoryWrapper wrapper;
+    private Method add;
+    private Method addToBase;
+    private Method hashAll;
+    private BenchmarkTargets receiver;
+
+    @Setup
+    public void setUp() {
+        wrapper = new LambdaMetafactoryWrapper(BenchmarkTargets.lookup(),
+                LambdaMetafactoryNoopCacheManager.getInstance());
+        add = BenchmarkTargets.method("add", int.class, int.class);
+        addToBase = BenchmarkTargets.method("addToBase", int.class);
+        hashAll = BenchmarkTargets.method("hashAll", Object[].class);
+        receiver = new BenchmarkTargets(42);
+    }
+
+    @Benchmark
+    public IntBinaryOperator nonCapturing() {
+        return wrapper.wrap(add, IntBinaryOperator.class);
+    }
+
+    @Benchmark
+    public IntUnaryOperator capturing() {
+        return wrapper.wrap(addToBase, LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                .addCapturedParameter(receiver)
+                .build());
+    }
+
+    @Benchmark
+    public IntSupplier varargs() {
+        return wrapper.wrap(hashAll, LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                .addCapturedParameter("Hello")
+                .addCapturedParameter("world")
+                .build());
+    }
+
+    @Benchmark
+    public IntBinaryOperator serializable() {
+        return wrapper.wrap(add, LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                .serializable(true)
+                .build());
+    }
+
+    @Benchmark
+    public IntBinaryOperator markerInterface() {
+        return wrapper.wrap(add, LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class)
+                .addMarkerInterface(BenchmarkTargets.Marker.class)
+                .addMarkerInterface(Serializable.class)
+                .build());
+    }
+}
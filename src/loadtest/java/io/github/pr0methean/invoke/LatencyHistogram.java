@@ -0,0 +1,58 @@
+package io.github.pr0methean.invoke;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear nanosecond histogram: each power of two is split into {@value #SUB_BUCKETS} buckets, so a percentile is
+ * reported to within about 12%, and recording never allocates or blocks.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final LongAdder[] buckets = new LongAdder[64 * SUB_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(final long nanos) {
+        final long value = Math.max(nanos, 1);
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = magnitude < SUB_BUCKET_BITS
+                ? (int) (value << (SUB_BUCKET_BITS - magnitude)) & (SUB_BUCKETS - 1)
+                : (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        buckets[magnitude * SUB_BUCKETS + subBucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    double meanNanos() {
+        return (double) totalNanos.sum() / count.sum();
+    }
+
+    // The upper bound of the bucket that holds the given fraction of samples
+    long percentileNanos(final double fraction) {
+        final long total = count.sum();
+        final long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= target && seen > 0) {
+                final int magnitude = i / SUB_BUCKETS;
+                final int subBucket = i % SUB_BUCKETS;
+                return magnitude < SUB_BUCKET_BITS
+                        ? Math.max(1, (long) (SUB_BUCKETS + subBucket + 1) >> (SUB_BUCKET_BITS - magnitude))
+                        : (long) (SUB_BUCKETS + subBucket + 1) << (magnitude - SUB_BUCKET_BITS);
+            }
+        }
+        return 0;
+    }
+}
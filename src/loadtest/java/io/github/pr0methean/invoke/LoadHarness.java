@@ -0,0 +1,293 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.SerializedLambda;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Drives a configurable mix of {@code wrap}, {@code wrapMethodHandle}, {@code deserializeLambda} and
+ * {@code clearCaches} against each cache manager in turn, from platform and virtual threads at once, while redeploying
+ * generations of synthetic classes. Reports throughput and latency percentiles for each operation, then how much
+ * metaspace the run left behind and how many of the redeployed class loaders could be unloaded.
+ * <p>
+ * Options are {@code --name=value}; see {@link #DEFAULTS}. Managers run one after another in the same JVM, so for a
+ * clean metaspace comparison, pass a single manager per run.
+ */
+public final class LoadHarness {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("managers", "default,bounded,classvalue,noop");
+        DEFAULTS.put("platformThreads", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        DEFAULTS.put("virtualThreads", "256");
+        DEFAULTS.put("warmupSeconds", "2");
+        DEFAULTS.put("seconds", "10");
+        // Generations are live at once; each has its own class loader
+        DEFAULTS.put("generations", "8");
+        DEFAULTS.put("classesPerGeneration", "16");
+        DEFAULTS.put("methodsPerClass", "32");
+        // How often one generation is replaced by a fresh one; 0 disables redeploys
+        DEFAULTS.put("redeployMillis", "1000");
+        // Relative weights of each operation
+        DEFAULTS.put("mix", "wrap:6000,wrapMethodHandle:2500,deserialize:1499,clearCaches:1");
+        // Percentage of wrap calls that capture a parameter
+        DEFAULTS.put("capturingPercent", "50");
+        DEFAULTS.put("distinctCaptures", "16");
+    }
+
+    @SuppressWarnings("unused")
+    private static volatile int blackhole;
+
+    private enum Operation { WRAP, WRAP_METHOD_HANDLE, DESERIALIZE, CLEAR_CACHES }
+
+    private final Map<String, String> options;
+    private final Operation[] schedule;
+    private final LambdaMetafactoryWrapper.Parameters<IntBinaryOperator> nonCapturing
+            = LambdaMetafactoryWrapper.Parameters.<IntBinaryOperator>builder(IntBinaryOperator.class).build();
+    private final List<LambdaMetafactoryWrapper.Parameters<IntUnaryOperator>> capturing = new ArrayList<>();
+    private final List<SerializedLambda> serializedLambdas = new ArrayList<>();
+
+    private LoadHarness(final Map<String, String> options) {
+        this.options = options;
+        schedule = parseMix(options.get("mix"));
+        for (int i = 0; i < intOption("distinctCaptures"); i++) {
+            capturing.add(LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                    .addCapturedParameter(i)
+                    .build());
+            serializedLambdas.add(new SerializedLambda(LoadHarness.class, "java/util/function/IntUnaryOperator",
+                    "applyAsInt", "(I)I", MethodHandleInfo.REF_invokeStatic,
+                    "io/github/pr0methean/invoke/LoadHarness", "add", "(II)I", "(I)I", new Object[]{i}));
+        }
+    }
+
+    // Target of the deserialized lambdas, which must be visible to the library's own class loader
+    public static int add(final int a, final int b) {
+        return a + b;
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0 || !DEFAULTS.containsKey(arg.substring(2, equals))) {
+                System.err.println("Usage: LoadHarness [--name=value]..., where the names and defaults are "
+                        + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        System.out.println("Options: " + options);
+        final LoadHarness harness = new LoadHarness(options);
+        for (final String manager : options.get("managers").split(",")) {
+            harness.run(manager.trim());
+        }
+    }
+
+    private static LambdaMetafactoryCacheManager createManager(final String name) {
+        return switch (name) {
+            case "default" -> LambdaMetafactoryDefaultCacheManager.getInstance();
+            case "bounded" -> LambdaMetafactoryBoundedCacheManager.builder().build();
+            case "classvalue" -> LambdaMetafactoryClassValueCacheManager.getInstance();
+            case "noop" -> LambdaMetafactoryNoopCacheManager.getInstance();
+            default -> throw new IllegalArgumentException("Unknown cache manager " + name);
+        };
+    }
+
+    private int intOption(final String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static Operation[] parseMix(final String mix) {
+        final Map<String, Operation> names = Map.of("wrap", Operation.WRAP,
+                "wrapMethodHandle", Operation.WRAP_METHOD_HANDLE, "deserialize", Operation.DESERIALIZE,
+                "clearCaches", Operation.CLEAR_CACHES);
+        final List<Operation> schedule = new ArrayList<>();
+        for (final String entry : mix.split(",")) {
+            final String[] parts = entry.split(":");
+            final Operation operation = names.get(parts[0].trim());
+            if (operation == null || parts.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + entry + "; expected one of " + names.keySet()
+                        + " and a weight");
+            }
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                schedule.add(operation);
+            }
+        }
+        if (schedule.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no operations");
+        }
+        return schedule.toArray(new Operation[0]);
+    }
+
+    private void run(final String managerName) throws InterruptedException {
+        final LambdaMetafactoryCacheManager manager = createManager(managerName);
+        System.out.println();
+        System.out.println("=== " + managerName + " (" + manager.getClass().getSimpleName() + ") ===");
+        System.gc();
+        final long metaspaceBefore = metaspaceUsed();
+        final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        final long unloadedBefore = classLoading.getUnloadedClassCount();
+
+        final int classes = intOption("classesPerGeneration");
+        final int methods = intOption("methodsPerClass");
+        final AtomicInteger generationNumber = new AtomicInteger();
+        final AtomicReferenceArray<SyntheticClasses.Generation> generations
+                = new AtomicReferenceArray<>(intOption("generations"));
+        for (int i = 0; i < generations.length(); i++) {
+            generations.set(i, SyntheticClasses.generate("g" + generationNumber.getAndIncrement(), classes, methods,
+                    manager));
+        }
+        final List<WeakReference<ClassLoader>> retired = new ArrayList<>();
+
+        final Map<Operation, LatencyHistogram> histograms = new HashMap<>();
+        for (final Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+        final LongAdder errors = new LongAdder();
+        final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        final long measureStart = System.nanoTime() + intOption("warmupSeconds") * 1_000_000_000L;
+        final long end = measureStart + intOption("seconds") * 1_000_000_000L;
+        final int capturingPercent = intOption("capturingPercent");
+        final Runnable worker = () -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            int sink = 0;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                final Operation operation = schedule[random.nextInt(schedule.length)];
+                try {
+                    sink += perform(operation, manager, generations.get(random.nextInt(generations.length())),
+                            random, capturingPercent);
+                } catch (final Throwable t) {
+                    errors.increment();
+                    firstError.compareAndSet(null, t);
+                }
+                if (now >= measureStart) {
+                    histograms.get(operation).record(System.nanoTime() - now);
+                }
+            }
+            // Keeps the results live, so that invoking the lambdas isn't optimized away
+            blackhole += sink;
+        };
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < intOption("platformThreads"); i++) {
+            threads.add(Thread.ofPlatform().name("load-platform-", i).start(worker));
+        }
+        for (int i = 0; i < intOption("virtualThreads"); i++) {
+            threads.add(Thread.ofVirtual().name("load-virtual-", i).start(worker));
+        }
+        final long redeployMillis = intOption("redeployMillis");
+        int redeploys = 0;
+        while (System.nanoTime() < end) {
+            if (redeployMillis <= 0) {
+                Thread.sleep(Math.max(1, (end - System.nanoTime()) / 1_000_000));
+                continue;
+            }
+            Thread.sleep(redeployMillis);
+            final int slot = ThreadLocalRandom.current().nextInt(generations.length());
+            final SyntheticClasses.Generation old = generations.getAndSet(slot, SyntheticClasses.generate(
+                    "g" + generationNumber.getAndIncrement(), classes, methods, manager));
+            retired.add(new WeakReference<>(old.loader()));
+            redeploys++;
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final double seconds = intOption("seconds");
+        System.out.printf(Locale.ROOT, "%-18s %12s %12s %10s %10s %10s %10s%n", "operation", "count", "ops/s",
+                "mean ns", "p50 ns", "p99 ns", "p99.9 ns");
+        for (final Operation operation : Operation.values()) {
+            final LatencyHistogram histogram = histograms.get(operation);
+            if (histogram.count() == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-18s %12d %12.0f %10.0f %10d %10d %10d%n", operation,
+                    histogram.count(), histogram.count() / seconds, histogram.meanNanos(),
+                    histogram.percentileNanos(0.5), histogram.percentileNanos(0.99),
+                    histogram.percentileNanos(0.999));
+        }
+        if (errors.sum() > 0) {
+            System.out.println("Errors: " + errors.sum() + ", first: " + firstError.get());
+        }
+        final long metaspaceAtEnd = metaspaceUsed();
+
+        // Drop everything, so that what remains after GC is what the manager failed to release
+        for (int i = 0; i < generations.length(); i++) {
+            retired.add(new WeakReference<>(generations.getAndSet(i, null).loader()));
+        }
+        manager.clearCaches();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        final long collected = retired.stream().filter(ref -> ref.get() == null).count();
+        System.out.printf(Locale.ROOT, "Redeploys: %d; class loaders unloaded: %d of %d retired; classes unloaded: "
+                        + "%d%n", redeploys, collected, retired.size(),
+                classLoading.getUnloadedClassCount() - unloadedBefore);
+        System.out.printf(Locale.ROOT, "Metaspace growth: %s at end of run, %s after clearing and GC%n",
+                formatBytes(metaspaceAtEnd - metaspaceBefore), formatBytes(metaspaceUsed() - metaspaceBefore));
+    }
+
+    private int perform(final Operation operation, final LambdaMetafactoryCacheManager manager,
+                        final SyntheticClasses.Generation generation, final ThreadLocalRandom random,
+                        final int capturingPercent) {
+        final int index = random.nextInt(generation.methods().size());
+        final LambdaMetafactoryWrapper wrapper = generation.wrappers().get(index);
+        switch (operation) {
+            case WRAP -> {
+                if (random.nextInt(100) < capturingPercent) {
+                    final IntUnaryOperator wrapped = wrapper.wrap(generation.methods().get(index),
+                            capturing.get(random.nextInt(capturing.size())));
+                    return wrapped.applyAsInt(index);
+                }
+                final IntBinaryOperator wrapped = wrapper.wrap(generation.methods().get(index), nonCapturing);
+                return wrapped.applyAsInt(index, 1);
+            }
+            case WRAP_METHOD_HANDLE -> {
+                final IntBinaryOperator wrapped = wrapper.wrapMethodHandle(generation.handles().get(index),
+                        nonCapturing);
+                return wrapped.applyAsInt(index, 1);
+            }
+            case DESERIALIZE -> {
+                final IntUnaryOperator deserialized = (IntUnaryOperator) manager.deserializeLambda(
+                        serializedLambdas.get(random.nextInt(serializedLambdas.size())));
+                return deserialized.applyAsInt(index);
+            }
+            case CLEAR_CACHES -> {
+                manager.clearCaches();
+                return 0;
+            }
+            default -> throw new AssertionError(operation);
+        }
+    }
+
+    private static long metaspaceUsed() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static String formatBytes(final long bytes) {
+        return String.format(Locale.ROOT, "%+.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
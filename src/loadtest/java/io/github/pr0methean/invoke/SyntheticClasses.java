@@ -0,0 +1,96 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates classes of static {@code (int, int)int} methods, each in a class loader of its own generation, so that a
+ * redeploy can drop a whole generation and its classes can be unloaded.
+ */
+final class SyntheticClasses {
+    private static final int IADD = 0x60;
+    private static final String LOOKUP_METHOD = "lookup";
+    private static final String LOOKUP_DESCRIPTOR = "()Ljava/lang/invoke/MethodHandles$Lookup;";
+    static final MethodType METHOD_TYPE = MethodType.methodType(int.class, int.class, int.class);
+
+    private SyntheticClasses() {}
+
+    private static final class GenerationLoader extends ClassLoader {
+        GenerationLoader(final String name) {
+            // The platform loader can't see this project, so nothing it loads keeps a generation reachable
+            super(name, ClassLoader.getPlatformClassLoader());
+        }
+
+        Class<?> define(final String binaryName, final byte[] bytes) {
+            return defineClass(binaryName, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * One redeployable unit: a class loader, and each of its methods with a handle and a wrapper that can see it.
+     */
+    record Generation(ClassLoader loader, List<Method> methods, List<MethodHandle> handles,
+                      List<LambdaMetafactoryWrapper> wrappers) {}
+
+    /**
+     * Each method {@code m<i>} of class {@code c} returns {@code a + b + i}. Wrappers are built per class, because a
+     * lambda for a method in another loader has to be spun with a lookup that can see it.
+     */
+    static Generation generate(final String name, final int classCount, final int methodsPerClass,
+                               final LambdaMetafactoryCacheManager cacheManager) {
+        final GenerationLoader loader = new GenerationLoader(name);
+        final List<Method> methods = new ArrayList<>(classCount * methodsPerClass);
+        final List<MethodHandle> handles = new ArrayList<>(classCount * methodsPerClass);
+        final List<LambdaMetafactoryWrapper> wrappers = new ArrayList<>(classCount * methodsPerClass);
+        for (int c = 0; c < classCount; c++) {
+            final String binaryName = "io.github.pr0methean.invoke.synthetic." + name + ".Target" + c;
+            final Class<?> type = loader.define(binaryName, writeClass(binaryName.replace('.', '/'),
+                    methodsPerClass));
+            final MethodHandles.Lookup lookup;
+            try {
+                lookup = (MethodHandles.Lookup) type.getMethod(LOOKUP_METHOD).invoke(null);
+            } catch (final ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+            final LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(lookup, cacheManager);
+            for (int i = 0; i < methodsPerClass; i++) {
+                try {
+                    methods.add(type.getMethod("m" + i, int.class, int.class));
+                    handles.add(lookup.findStatic(type, "m" + i, METHOD_TYPE));
+                } catch (final ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+                wrappers.add(wrapper);
+            }
+        }
+        return new Generation(loader, List.copyOf(methods), List.copyOf(handles), List.copyOf(wrappers));
+    }
+
+    private static byte[] writeClass(final String internalName, final int methodCount) {
+        final ClassFileWriter writer = new ClassFileWriter(
+                ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER, internalName,
+                "java/lang/Object");
+        for (int i = 0; i < methodCount; i++) {
+            writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "m" + i,
+                            METHOD_TYPE.toMethodDescriptorString())
+                    .op1(ClassFileWriter.ILOAD, 0)
+                    .op1(ClassFileWriter.ILOAD, 1)
+                    .op(IADD)
+                    .pushInt(i)
+                    .op(IADD)
+                    .op(ClassFileWriter.IRETURN)
+                    .end(2, 2);
+        }
+        // A full-privilege lookup can only come from the class itself, since it's in another loader's module
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, LOOKUP_METHOD, LOOKUP_DESCRIPTOR)
+                .invoke(ClassFileWriter.INVOKESTATIC, "java/lang/invoke/MethodHandles", LOOKUP_METHOD,
+                        LOOKUP_DESCRIPTOR)
+                .op(ClassFileWriter.ARETURN)
+                .end(1, 0);
+        return writer.toByteArray();
+    }
+}
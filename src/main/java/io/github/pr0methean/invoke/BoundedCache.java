@@ -0,0 +1,294 @@
+package io.github.pr0methean.invoke;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded cache with window TinyLFU eviction. A new entry always goes into a small LRU window, so whoever spun
+ * it gets to reuse it for a while; when it leaves the window, it only displaces the main region's least recently
+ * used entry if it has been requested more often, so one-off keys can't flush out hot ones.
+ *
+ * <p>Hits never lock: they go straight to a {@link ConcurrentHashMap} and leave the entry in a lossy buffer, which is
+ * replayed into the LRU order and frequency sketch by whichever thread next holds the lock. Concurrent misses for a
+ * key share one computation, which runs outside the lock.
+ */
+final class BoundedCache<K, V> {
+    private static final int[] SEEDS = {0x97cb3127, 0xb0a82e8f, 0x5bd1e995, 0xc2b2ae35};
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int WINDOW = 0;
+    private static final int MAIN = 1;
+    private static final int REMOVED = 2;
+
+    private final int windowMaximum;
+    private final int mainMaximum;
+    private final long expireAfterAccessNanos;
+    private final LongSupplier ticker;
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicInteger readBufferWrites = new AtomicInteger();
+    // Everything below is guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Node<K, V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<K, V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    // Count-min sketch of 4-bit saturating counters, halved every sampleSize increments so that old popularity decays
+    private final byte[] frequencies;
+    private final int frequencyMask;
+    private final int sampleSize;
+    private int additions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LambdaMetafactoryMetrics.CacheTier tier;
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        volatile long lastAccess;
+        // WINDOW, MAIN or REMOVED; guarded by the lock
+        int queue = WINDOW;
+
+        Node(final K key, final V value, final long lastAccess) {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    BoundedCache(final int maximumSize, final long expireAfterAccessNanos, final LongSupplier ticker) {
+        this(maximumSize, expireAfterAccessNanos, ticker, null);
+    }
+
+    BoundedCache(final int maximumSize, final long expireAfterAccessNanos, final LongSupplier ticker,
+                 final LambdaMetafactoryMetrics.CacheTier tier) {
+        this.tier = tier;
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize must not be negative");
+        }
+        windowMaximum = maximumSize == 0 ? 0 : Math.max(1, maximumSize / 100);
+        mainMaximum = maximumSize - windowMaximum;
+        this.expireAfterAccessNanos = expireAfterAccessNanos;
+        this.ticker = ticker;
+        sampleSize = Math.max(10 * maximumSize, 160);
+        // At least a counter per increment between halvings, so that a small cache's sketch doesn't saturate
+        final int tableSize = Integer.highestOneBit(sampleSize - 1) << 1;
+        frequencies = new byte[tableSize];
+        frequencyMask = tableSize - 1;
+    }
+
+    V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        LambdaMetafactoryMetrics.recordRequest(tier);
+        final V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        return SingleFlight.load(this, key, this::getIfPresent, k -> load(k, mappingFunction));
+    }
+
+    private V getIfPresent(final K key) {
+        final Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        final long now = ticker.getAsLong();
+        if (isExpired(node, now)) {
+            // Left for the loader to remove, since that takes the lock
+            return null;
+        }
+        node.lastAccess = now;
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    private V load(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        misses.increment();
+        LambdaMetafactoryMetrics.recordMiss(tier);
+        final V value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            drainReadBuffer();
+            recordAccess(key);
+            final long now = ticker.getAsLong();
+            final Node<K, V> expired = data.get(key);
+            if (expired != null) {
+                remove(expired);
+                recordEviction();
+            }
+            expireEntries(window, now);
+            expireEntries(main, now);
+            if (windowMaximum > 0) {
+                final Node<K, V> node = new Node<>(key, value, now);
+                data.put(key, node);
+                window.put(key, node);
+                evict();
+            }
+            // Returned even if it wasn't cached
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(final Node<K, V> node, final long now) {
+        return expireAfterAccessNanos >= 0 && now - node.lastAccess >= expireAfterAccessNanos;
+    }
+
+    private void recordRead(final Node<K, V> node) {
+        final int index = readBufferWrites.getAndIncrement();
+        if (index < READ_BUFFER_SIZE) {
+            readBuffer.lazySet(index, node);
+        }
+        // Reads while the buffer is full are dropped until some thread drains it
+        if (index >= READ_BUFFER_SIZE - 1 && lock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        final int count = Math.min(readBufferWrites.getAndSet(0), READ_BUFFER_SIZE);
+        for (int i = 0; i < count; i++) {
+            final Node<K, V> node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                recordAccess(node.key);
+                // Moves the node to the most recently used end
+                if (node.queue == WINDOW) {
+                    window.get(node.key);
+                } else if (node.queue == MAIN) {
+                    main.get(node.key);
+                }
+            }
+        }
+    }
+
+    // Access order only approximates recency, so an expired entry behind a live one waits for its next read
+    private void expireEntries(final LinkedHashMap<K, Node<K, V>> queue, final long now) {
+        if (expireAfterAccessNanos < 0) {
+            return;
+        }
+        final Iterator<Node<K, V>> lruFirst = queue.values().iterator();
+        while (lruFirst.hasNext()) {
+            final Node<K, V> node = lruFirst.next();
+            if (!isExpired(node, now)) {
+                break;
+            }
+            lruFirst.remove();
+            node.queue = REMOVED;
+            data.remove(node.key, node);
+            recordEviction();
+        }
+    }
+
+    // Moves the window's overflow into the main region, where each entry has to outrank that region's LRU entry
+    private void evict() {
+        while (window.size() > windowMaximum) {
+            final Node<K, V> candidate = window.values().iterator().next();
+            window.remove(candidate.key);
+            if (main.size() < mainMaximum) {
+                candidate.queue = MAIN;
+                main.put(candidate.key, candidate);
+                continue;
+            }
+            if (mainMaximum > 0) {
+                final Node<K, V> victim = main.values().iterator().next();
+                if (frequency(candidate.key) > frequency(victim.key)) {
+                    remove(victim);
+                    candidate.queue = MAIN;
+                    main.put(candidate.key, candidate);
+                    recordEviction();
+                    continue;
+                }
+            }
+            candidate.queue = REMOVED;
+            data.remove(candidate.key, candidate);
+            recordEviction();
+        }
+    }
+
+    private void remove(final Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            window.remove(node.key, node);
+        } else if (node.queue == MAIN) {
+            main.remove(node.key, node);
+        }
+        node.queue = REMOVED;
+        data.remove(node.key, node);
+    }
+
+    private void recordEviction() {
+        evictions.increment();
+        LambdaMetafactoryMetrics.recordEvictions(tier, 1);
+    }
+
+    private int index(final Object key, final int row) {
+        int hash = (key.hashCode() + SEEDS[row]) * 0x9e3779b9;
+        hash ^= hash >>> 16;
+        return hash & frequencyMask;
+    }
+
+    private void recordAccess(final Object key) {
+        for (int row = 0; row < SEEDS.length; row++) {
+            final int index = index(key, row);
+            if (frequencies[index] < 15) {
+                frequencies[index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            for (int i = 0; i < frequencies.length; i++) {
+                frequencies[i] >>>= 1;
+            }
+            additions >>>= 1;
+        }
+    }
+
+    private int frequency(final Object key) {
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, frequencies[index(key, row)]);
+        }
+        return frequency;
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            for (final Node<K, V> node : data.values()) {
+                node.queue = REMOVED;
+            }
+            window.clear();
+            main.clear();
+            data.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+}
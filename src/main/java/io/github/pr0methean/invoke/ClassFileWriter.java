@@ -0,0 +1,494 @@
+package io.github.pr0methean.invoke;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Just enough of a class file writer for the classes this library spins: a deduplicated constant pool, fields, and
+ * methods whose bytecode is written by hand. Callers supply max_stack and max_locals.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+    static final int ACC_INTERFACE = 0x0200;
+    static final int ACC_ABSTRACT = 0x0400;
+    static final int ACC_SYNTHETIC = 0x1000;
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int LLOAD = 0x16;
+    static final int FLOAD = 0x17;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int SWAP = 0x5f;
+    static final int TABLESWITCH = 0xaa;
+    static final int IRETURN = 0xac;
+    static final int LRETURN = 0xad;
+    static final int FRETURN = 0xae;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolCount = 1;
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFileWriter(final int access, final String internalName, final String superName,
+                    final String... interfaceNames) {
+        this.access = access;
+        thisClass = classRef(internalName);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    static String internalName(final Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    private int constant(final String key, final Writer writer) {
+        final Integer existing = poolIndices.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            writer.write();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final int index = poolCount++;
+        poolIndices.put(key, index);
+        return index;
+    }
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    int utf8(final String value) {
+        return constant("U" + value, () -> {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        });
+    }
+
+    int integer(final int value) {
+        return constant("I" + value, () -> {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        });
+    }
+
+    int classRef(final String internalName) {
+        final int name = utf8(internalName);
+        return constant("C" + internalName, () -> {
+            pool.writeByte(CONSTANT_CLASS);
+            pool.writeShort(name);
+        });
+    }
+
+    int string(final String value) {
+        final int utf8 = utf8(value);
+        return constant("S" + value, () -> {
+            pool.writeByte(CONSTANT_STRING);
+            pool.writeShort(utf8);
+        });
+    }
+
+    private int nameAndType(final String name, final String descriptor) {
+        final int nameIndex = utf8(name);
+        final int descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ' ' + descriptor, () -> {
+            pool.writeByte(CONSTANT_NAME_AND_TYPE);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(final int tag, final String owner, final String name, final String descriptor) {
+        final int ownerIndex = classRef(owner);
+        final int nameAndType = nameAndType(name, descriptor);
+        return constant("M" + tag + owner + '.' + name + descriptor, () -> {
+            pool.writeByte(tag);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+        });
+    }
+
+    int fieldRef(final String owner, final String name, final String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(final String owner, final String name, final String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(final String owner, final String name, final String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    void addField(final int access, final String name, final String descriptor) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    void addAbstractMethod(final int access, final String name, final String descriptor) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(access | ACC_ABSTRACT);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    Code addMethod(final int access, final String name, final String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    /**
+     * Bytecode of one method; nothing is added to the class until {@link #end} is called. Branch targets must have
+     * the same locals as on entry and an empty stack, and be marked with {@link #sameFrame}.
+     */
+    final class Code {
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private byte[] code = new byte[64];
+        private int length;
+        private final TreeSet<Integer> frames = new TreeSet<>();
+
+        private Code(final int access, final String name, final String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        private void put(final int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void putInt(final int value) {
+            put(value >>> 24);
+            put(value >>> 16);
+            put(value >>> 8);
+            put(value);
+        }
+
+        private void patchInt(final int position, final int value) {
+            code[position] = (byte) (value >>> 24);
+            code[position + 1] = (byte) (value >>> 16);
+            code[position + 2] = (byte) (value >>> 8);
+            code[position + 3] = (byte) value;
+        }
+
+        Code op(final int opcode) {
+            put(opcode);
+            return this;
+        }
+
+        Code op1(final int opcode, final int operand) {
+            put(opcode);
+            put(operand);
+            return this;
+        }
+
+        Code op2(final int opcode, final int operand) {
+            put(opcode);
+            put(operand >>> 8);
+            put(operand);
+            return this;
+        }
+
+        Code pushInt(final int value) {
+            if (value >= -1 && value <= 5) {
+                return op(ICONST_0 + value);
+            }
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                return op1(BIPUSH, value & 0xff);
+            }
+            if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return op2(SIPUSH, value & 0xffff);
+            }
+            return op2(LDC_W, integer(value));
+        }
+
+        Code load(final Class<?> type, final int slot) {
+            return op1(loadOpcode(type), slot);
+        }
+
+        /**
+         * Loads the parameters of {@code type} onto the stack, starting at the given local variable slot.
+         */
+        Code loadParameters(final MethodType type, int slot) {
+            for (final Class<?> parameterType : type.parameterList()) {
+                load(parameterType, slot);
+                slot += slots(parameterType);
+            }
+            return this;
+        }
+
+        Code returnValue(final Class<?> type) {
+            return op(returnOpcode(type));
+        }
+
+        Code invoke(final int opcode, final String owner, final String name, final String descriptor) {
+            if (opcode == INVOKEINTERFACE) {
+                final MethodType type = MethodType.fromMethodDescriptorString(descriptor, null);
+                op2(opcode, interfaceMethodRef(owner, name, descriptor));
+                put(parameterSlots(type) + 1);
+                put(0);
+                return this;
+            }
+            return op2(opcode, methodRef(owner, name, descriptor));
+        }
+
+        Code field(final int opcode, final String owner, final String name, final String descriptor) {
+            return op2(opcode, fieldRef(owner, name, descriptor));
+        }
+
+        /**
+         * Marks the current position as a branch target.
+         */
+        Code sameFrame() {
+            frames.add(length);
+            return this;
+        }
+
+        /**
+         * Pops an int and jumps to the case bound for it; the targets are bound afterward.
+         */
+        TableSwitch tableSwitch(final int low, final int high) {
+            final int opcodePosition = length;
+            put(TABLESWITCH);
+            while (length % 4 != 0) {
+                put(0);
+            }
+            final int defaultPosition = length;
+            putInt(0);
+            putInt(low);
+            putInt(high);
+            for (int i = low; i <= high; i++) {
+                putInt(0);
+            }
+            return new TableSwitch(opcodePosition, defaultPosition, low);
+        }
+
+        final class TableSwitch {
+            private final int opcodePosition;
+            private final int defaultPosition;
+            private final int low;
+
+            private TableSwitch(final int opcodePosition, final int defaultPosition, final int low) {
+                this.opcodePosition = opcodePosition;
+                this.defaultPosition = defaultPosition;
+                this.low = low;
+            }
+
+            void bindCase(final int value) {
+                patchInt(defaultPosition + 12 + 4 * (value - low), length - opcodePosition);
+                sameFrame();
+            }
+
+            void bindDefault() {
+                patchInt(defaultPosition, length - opcodePosition);
+                sameFrame();
+            }
+        }
+
+        void end(final int maxStack, final int maxLocals) {
+            final byte[] stackMapTable = stackMapTable();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length + (stackMapTable == null ? 0 : 6 + stackMapTable.length));
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(0); // exception table
+                if (stackMapTable == null) {
+                    out.writeShort(0);
+                } else {
+                    out.writeShort(1);
+                    out.writeShort(utf8("StackMapTable"));
+                    out.writeInt(stackMapTable.length);
+                    out.write(stackMapTable);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+
+        private byte[] stackMapTable() {
+            if (frames.isEmpty()) {
+                return null;
+            }
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeShort(frames.size());
+                int previous = -1;
+                for (final int position : frames) {
+                    final int delta = position - previous - 1;
+                    if (delta < 64) {
+                        out.writeByte(delta); // same_frame
+                    } else {
+                        out.writeByte(251); // same_frame_extended
+                        out.writeShort(delta);
+                    }
+                    previous = position;
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    static int slots(final Class<?> type) {
+        return type == long.class || type == double.class ? 2 : type == void.class ? 0 : 1;
+    }
+
+    static int parameterSlots(final MethodType type) {
+        int slots = 0;
+        for (final Class<?> parameterType : type.parameterList()) {
+            slots += slots(parameterType);
+        }
+        return slots;
+    }
+
+    private static int loadOpcode(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return ALOAD;
+        }
+        if (type == long.class) {
+            return LLOAD;
+        }
+        if (type == float.class) {
+            return FLOAD;
+        }
+        if (type == double.class) {
+            return DLOAD;
+        }
+        return ILOAD;
+    }
+
+    private static int returnOpcode(final Class<?> type) {
+        if (type == void.class) {
+            return RETURN;
+        }
+        if (!type.isPrimitive()) {
+            return ARETURN;
+        }
+        if (type == long.class) {
+            return LRETURN;
+        }
+        if (type == float.class) {
+            return FRETURN;
+        }
+        if (type == double.class) {
+            return DRETURN;
+        }
+        return IRETURN;
+    }
+
+    byte[] toByteArray() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52); // Java 8; nothing here needs a newer format
+            out.writeShort(poolCount);
+            pool.flush();
+            out.write(poolBytes.toByteArray());
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (final int anInterface : interfaces) {
+                out.writeShort(anInterface);
+            }
+            out.writeShort(fields.size());
+            for (final byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (final byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // attributes
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,290 @@
+package io.github.pr0methean.invoke;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binary format for serializable lambdas from {@link LambdaMetafactoryWrapper}. Instead of a {@link SerializedLambda}
+ * per instance, each distinct implementation is described once per stream and later referred to by a small integer
+ * id, so most records consist of an id and the captured arguments. Captured arguments still use Java serialization.
+ */
+public final class CompactLambdaCodec {
+    private static final int MAGIC = 0x4c4d4643; // "LMFC"
+    private static final int VERSION = 1;
+    private static final int END_OF_STREAM = 0;
+    private static final String CAPTURING_CLASS = LambdaMetafactoryWrapper.class.getName().replace('.', '/');
+
+    private static final ClassValue<Method> WRITE_REPLACE = new ClassValue<>() {
+        @Override
+        protected Method computeValue(final Class<?> type) {
+            try {
+                final Method writeReplace = type.getDeclaredMethod("writeReplace");
+                writeReplace.setAccessible(true);
+                return writeReplace;
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    private CompactLambdaCodec() {}
+
+    public static Writer newWriter(final OutputStream out) throws IOException {
+        return new Writer(out);
+    }
+
+    public static Reader newReader(final InputStream in) throws IOException {
+        return new Reader(in, LambdaMetafactoryDefaultCacheManager.getInstance());
+    }
+
+    public static Reader newReader(final InputStream in, final LambdaMetafactoryCacheManager cacheManager)
+            throws IOException {
+        return new Reader(in, cacheManager);
+    }
+
+    // Everything about a serialized lambda except its captured arguments
+    private record ImplementationDescriptor(
+            String functionalInterfaceClass,
+            String functionalInterfaceMethodName,
+            String functionalInterfaceMethodSignature,
+            int implMethodKind,
+            String implClass,
+            String implMethodName,
+            String implMethodSignature,
+            String instantiatedMethodType,
+            int capturedArgCount
+    ) {
+        static ImplementationDescriptor of(final SerializedLambda lambda) {
+            return new ImplementationDescriptor(lambda.getFunctionalInterfaceClass(),
+                    lambda.getFunctionalInterfaceMethodName(), lambda.getFunctionalInterfaceMethodSignature(),
+                    lambda.getImplMethodKind(), lambda.getImplClass(), lambda.getImplMethodName(),
+                    lambda.getImplMethodSignature(), lambda.getInstantiatedMethodType(), lambda.getCapturedArgCount());
+        }
+
+        void writeTo(final ObjectOutputStream out) throws IOException {
+            out.writeUTF(functionalInterfaceClass);
+            out.writeUTF(functionalInterfaceMethodName);
+            out.writeUTF(functionalInterfaceMethodSignature);
+            out.writeByte(implMethodKind);
+            out.writeUTF(implClass);
+            out.writeUTF(implMethodName);
+            out.writeUTF(implMethodSignature);
+            out.writeUTF(instantiatedMethodType);
+            writeVarInt(out, capturedArgCount);
+        }
+
+        static ImplementationDescriptor readFrom(final ObjectInputStream in) throws IOException {
+            return new ImplementationDescriptor(in.readUTF(), in.readUTF(), in.readUTF(), in.readUnsignedByte(),
+                    in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), readVarInt(in));
+        }
+    }
+
+    private static void writeVarInt(final ObjectOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(final ObjectInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length integer");
+    }
+
+    public static final class Writer implements Closeable, Flushable {
+        private final ObjectOutputStream out;
+        private final Map<ImplementationDescriptor, Integer> ids = new HashMap<>();
+
+        private Writer(final OutputStream out) throws IOException {
+            this.out = new ObjectOutputStream(requireNonNull(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        public void write(final Object lambda) throws IOException {
+            final SerializedLambda serializedLambda = serializedForm(requireNonNull(lambda));
+            final ImplementationDescriptor descriptor = ImplementationDescriptor.of(serializedLambda);
+            final Integer existingId = ids.get(descriptor);
+            if (existingId != null) {
+                writeVarInt(out, existingId);
+            } else {
+                // Ids start at 1, since 0 marks the end of the stream
+                final int id = ids.size() + 1;
+                ids.put(descriptor, id);
+                writeVarInt(out, id);
+                descriptor.writeTo(out);
+            }
+            for (int i = 0; i < serializedLambda.getCapturedArgCount(); i++) {
+                out.writeObject(serializedLambda.getCapturedArg(i));
+            }
+        }
+
+        public void writeAll(final Iterable<?> lambdas) throws IOException {
+            for (final Object lambda : lambdas) {
+                write(lambda);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                writeVarInt(out, END_OF_STREAM);
+            }
+        }
+
+        private static SerializedLambda serializedForm(final Object lambda) throws IOException {
+            final Method writeReplace = WRITE_REPLACE.get(lambda.getClass());
+            if (writeReplace != null) {
+                try {
+                    if (writeReplace.invoke(lambda) instanceof SerializedLambda serializedLambda
+                            && CAPTURING_CLASS.equals(serializedLambda.getCapturingClass())) {
+                        return serializedLambda;
+                    }
+                } catch (final ReflectiveOperationException e) {
+                    throw new IOException(e);
+                }
+            }
+            throw new NotSerializableException(lambda.getClass().getName()
+                    + " isn't a serializable lambda from LambdaMetafactoryWrapper");
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final ObjectInputStream in;
+        private final LambdaMetafactoryCacheManager cacheManager;
+        private final List<ImplementationDescriptor> descriptors = new ArrayList<>();
+        private boolean ended;
+
+        private Reader(final InputStream in, final LambdaMetafactoryCacheManager cacheManager) throws IOException {
+            this.in = new ObjectInputStream(requireNonNull(in));
+            this.cacheManager = requireNonNull(cacheManager);
+            if (this.in.readInt() != MAGIC) {
+                throw new StreamCorruptedException("Not a compact lambda stream");
+            }
+            final int version = this.in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new StreamCorruptedException("Unsupported compact lambda stream version " + version);
+            }
+        }
+
+        /**
+         * @throws EOFException if the writer's end-of-stream marker has been read
+         */
+        public Object read() throws IOException, ClassNotFoundException {
+            if (ended) {
+                throw new EOFException();
+            }
+            final int id = readVarInt(in);
+            if (id == END_OF_STREAM) {
+                ended = true;
+                throw new EOFException();
+            }
+            final ImplementationDescriptor descriptor;
+            if (id == descriptors.size() + 1) {
+                descriptor = ImplementationDescriptor.readFrom(in);
+                descriptors.add(descriptor);
+            } else if (id <= descriptors.size()) {
+                descriptor = descriptors.get(id - 1);
+            } else {
+                throw new StreamCorruptedException("Unknown implementation id " + id);
+            }
+            final Object[] capturedArgs = new Object[descriptor.capturedArgCount];
+            for (int i = 0; i < capturedArgs.length; i++) {
+                capturedArgs[i] = in.readObject();
+            }
+            try {
+                return cacheManager.deserializeLambda(new SerializedLambda(LambdaMetafactoryWrapper.class,
+                        descriptor.functionalInterfaceClass, descriptor.functionalInterfaceMethodName,
+                        descriptor.functionalInterfaceMethodSignature, descriptor.implMethodKind, descriptor.implClass,
+                        descriptor.implMethodName, descriptor.implMethodSignature, descriptor.instantiatedMethodType,
+                        capturedArgs));
+            } catch (final RuntimeException e) {
+                final InvalidObjectException wrapped = new InvalidObjectException("Can't resolve "
+                        + descriptor.implClass + "." + descriptor.implMethodName + descriptor.implMethodSignature);
+                wrapped.initCause(e);
+                throw wrapped;
+            }
+        }
+
+        /**
+         * Lazily reads lambdas until the end-of-stream marker. Failures are rethrown as {@link UncheckedIOException}.
+         */
+        public Stream<Object> readAll() {
+            final Iterator<Object> iterator = new Iterator<>() {
+                private Object next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null && !ended) {
+                        try {
+                            next = read();
+                        } catch (final EOFException e) {
+                            if (!ended) {
+                                throw new UncheckedIOException(e);
+                            }
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        } catch (final ClassNotFoundException e) {
+                            throw new UncheckedIOException(new IOException(e));
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final Object result = next;
+                    next = null;
+                    return result;
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Like a synchronized {@link java.util.WeakHashMap}, but reads never lock and writes only lock one bin of the backing
+ * {@link ConcurrentHashMap}. Stale entries are expunged on writes. Null keys and values aren't supported.
+ */
+final class ConcurrentWeakKeyMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private final ConcurrentHashMap<KeyReference<K>, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+    private final AtomicLong expungedCount = new AtomicLong();
+    private final LambdaMetafactoryMetrics.CacheTier tier;
+    // If true, computeIfAbsent runs the mapping function outside any lock; see SingleFlight
+    private final boolean singleFlight;
+
+    ConcurrentWeakKeyMap() {
+        this(null);
+    }
+
+    ConcurrentWeakKeyMap(final LambdaMetafactoryMetrics.CacheTier tier) {
+        this(tier, false);
+    }
+
+    ConcurrentWeakKeyMap(final LambdaMetafactoryMetrics.CacheTier tier, final boolean singleFlight) {
+        this.tier = tier;
+        this.singleFlight = singleFlight;
+    }
+
+    private interface KeyReference<K> {
+        K get();
+    }
+
+    private static boolean keyReferencesEqual(final KeyReference<?> self, final int hash, final Object other) {
+        if (other == self) {
+            return true;
+        }
+        if (!(other instanceof KeyReference<?> otherRef) || other.hashCode() != hash) {
+            return false;
+        }
+        final Object key = self.get();
+        return key != null && key.equals(otherRef.get());
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> implements KeyReference<K> {
+        private final int hash;
+
+        WeakKey(final K key, final ReferenceQueue<? super K> queue) {
+            super(key, queue);
+            hash = key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return keyReferencesEqual(this, hash, obj);
+        }
+    }
+
+    // Only used as a probe, so it never needs to be enqueued
+    private record LookupKey<K>(K get, int hash) implements KeyReference<K> {
+        LookupKey(final K get) {
+            this(requireNonNull(get), get.hashCode());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return keyReferencesEqual(this, hash, obj);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    int expungeStaleEntries() {
+        int expunged = 0;
+        Reference<? extends K> stale;
+        while ((stale = queue.poll()) != null) {
+            if (map.remove((KeyReference<K>) stale) != null) {
+                expunged++;
+            }
+        }
+        if (expunged > 0) {
+            expungedCount.addAndGet(expunged);
+            LambdaMetafactoryMetrics.recordEvictions(tier, expunged);
+        }
+        return expunged;
+    }
+
+    long expungedCount() {
+        return expungedCount.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> LookupKey<K> lookupKey(final Object key) {
+        return new LookupKey<>((K) key);
+    }
+
+    @Override
+    public V get(final Object key) {
+        return map.get(lookupKey(key));
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return map.containsKey(lookupKey(key));
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        expungeStaleEntries();
+        return map.put(new WeakKey<>(key, queue), value);
+    }
+
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        expungeStaleEntries();
+        return map.putIfAbsent(new WeakKey<>(key, queue), value);
+    }
+
+    @Override
+    public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        if (singleFlight) {
+            return SingleFlight.computeIfAbsent(this, key, mappingFunction);
+        }
+        final V existing = map.get(lookupKey(key));
+        if (existing != null) {
+            return existing;
+        }
+        expungeStaleEntries();
+        return map.computeIfAbsent(new WeakKey<>(key, queue), ignored -> mappingFunction.apply(key));
+    }
+
+    @Override
+    public V remove(final Object key) {
+        expungeStaleEntries();
+        return map.remove(lookupKey(key));
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        expungeStaleEntries();
+        return map.remove(lookupKey(key), value);
+    }
+
+    @Override
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+        return map.replace(lookupKey(key), oldValue, newValue);
+    }
+
+    @Override
+    public V replace(final K key, final V value) {
+        return map.replace(lookupKey(key), value);
+    }
+
+    // Includes entries whose keys have been collected but not yet expunged
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        // Anything still enqueued refers to entries that are already gone
+        while (queue.poll() != null) {
+            // Drain
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                final Iterator<Entry<KeyReference<K>, V>> delegate = map.entrySet().iterator();
+                return new Iterator<>() {
+                    private Entry<K, V> next;
+                    private KeyReference<K> lastReturned;
+                    private KeyReference<K> nextReference;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && delegate.hasNext()) {
+                            final Entry<KeyReference<K>, V> entry = delegate.next();
+                            final K key = entry.getKey().get();
+                            if (key != null) {
+                                next = new SimpleImmutableEntry<>(key, entry.getValue());
+                                nextReference = entry.getKey();
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<K, V> result = next;
+                        lastReturned = nextReference;
+                        next = null;
+                        return result;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastReturned == null) {
+                            throw new IllegalStateException();
+                        }
+                        map.remove(lastReturned);
+                        lastReturned = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+}
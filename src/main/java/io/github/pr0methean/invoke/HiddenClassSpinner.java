@@ -0,0 +1,278 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.pr0methean.invoke.ClassFileWriter.*;
+
+/**
+ * Spins hidden classes that extend an abstract class or implement an interface, where each overridden method calls a
+ * {@link MethodHandle} held in a {@code static final} field. The handles are passed as class data and loaded in
+ * {@code <clinit>}, and static finals are trusted as constants, so the JIT can inline through them.
+ */
+final class HiddenClassSpinner {
+    private static final String HANDLE_FIELD_PREFIX = "handle";
+    private static final String INDEX_FIELD = "index";
+    private static final String METHOD_HANDLE = internalName(MethodHandle.class);
+    private static final String METHOD_HANDLE_DESCRIPTOR = MethodHandle.class.descriptorString();
+
+    private HiddenClassSpinner() {}
+
+    record MethodKey(String name, List<Class<?>> parameterTypes) {
+        static MethodKey of(final Method method) {
+            return new MethodKey(method.getName(), List.of(method.getParameterTypes()));
+        }
+    }
+
+    /**
+     * Returns the methods a concrete subclass of {@code type} would have to implement.
+     */
+    static List<Method> abstractMethods(final Class<?> type) {
+        final Map<MethodKey, Method> found = new LinkedHashMap<>();
+        final Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            for (final Method method : clazz.getDeclaredMethods()) {
+                if (!Modifier.isStatic(method.getModifiers()) && !method.isBridge()) {
+                    found.putIfAbsent(MethodKey.of(method), method);
+                }
+            }
+            collectInterfaces(clazz, interfaces);
+        }
+        for (final Class<?> anInterface : interfaces) {
+            for (final Method method : anInterface.getDeclaredMethods()) {
+                if (!Modifier.isStatic(method.getModifiers()) && !Modifier.isPrivate(method.getModifiers())) {
+                    found.putIfAbsent(MethodKey.of(method), method);
+                }
+            }
+        }
+        // Interfaces may redeclare Object's methods, but those are always implemented
+        return found.values().stream()
+                .filter(method -> Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method))
+                .toList();
+    }
+
+    private static boolean isObjectMethod(final Method method) {
+        try {
+            return Modifier.isPublic(Object.class.getMethod(method.getName(), method.getParameterTypes())
+                    .getModifiers());
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void collectInterfaces(final Class<?> clazz, final Set<Class<?>> interfaces) {
+        if (clazz.isInterface()) {
+            interfaces.add(clazz);
+        }
+        for (final Class<?> anInterface : clazz.getInterfaces()) {
+            collectInterfaces(anInterface, interfaces);
+        }
+    }
+
+    /**
+     * @param definingLookup must have full privilege access, in a package from which {@code type} can be subclassed
+     * @param implementations each adaptable to its method's type, not counting the receiver
+     * @return a new instance of the spun class
+     */
+    static Object spin(final MethodHandles.Lookup definingLookup, final Class<?> type,
+                       final Map<Method, MethodHandle> implementations) {
+        if (type.isPrimitive() || type.isArray() || Modifier.isFinal(type.getModifiers()) || type.isSealed()) {
+            throw new IllegalArgumentException("Can't subclass " + type);
+        }
+        final List<Method> abstractMethods = abstractMethods(type);
+        final Set<MethodKey> implementedKeys = new HashSet<>();
+        for (final Method method : implementations.keySet()) {
+            final int modifiers = method.getModifiers();
+            if (!method.getDeclaringClass().isAssignableFrom(type) || Modifier.isStatic(modifiers)
+                    || Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers)) {
+                throw new IllegalArgumentException("Can't override " + method + " in a subclass of " + type);
+            }
+            implementedKeys.add(MethodKey.of(method));
+        }
+        final List<Method> missing = abstractMethods.stream()
+                .filter(method -> !implementedKeys.contains(MethodKey.of(method)))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("No implementation given for " + missing);
+        }
+        final Constructor<?> superConstructor;
+        final String superName;
+        final String[] interfaceNames;
+        if (type.isInterface()) {
+            superConstructor = null;
+            superName = "java/lang/Object";
+            interfaceNames = new String[]{internalName(type)};
+        } else {
+            try {
+                superConstructor = type.getDeclaredConstructor();
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalArgumentException(type + " has no no-arg constructor", e);
+            }
+            if (Modifier.isPrivate(superConstructor.getModifiers())) {
+                throw new IllegalArgumentException(type + " has a private no-arg constructor");
+            }
+            superName = internalName(type);
+            interfaceNames = new String[0];
+        }
+        final String className = definingLookup.lookupClass().getPackageName().replace('.', '/')
+                + (definingLookup.lookupClass().getPackageName().isEmpty() ? "" : "/")
+                + type.getSimpleName() + "$$Spun";
+        final ClassFileWriter writer = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+                className, superName, interfaceNames);
+        final List<MethodHandle> handles = new ArrayList<>(implementations.size());
+        for (final Map.Entry<Method, MethodHandle> entry : implementations.entrySet()) {
+            final Method method = entry.getKey();
+            final MethodType methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            final MethodHandle handle;
+            try {
+                handle = entry.getValue().asType(methodType);
+            } catch (final WrongMethodTypeException e) {
+                throw new IllegalArgumentException("Implementation of " + method + " has incompatible type "
+                        + entry.getValue().type(), e);
+            }
+            final String field = HANDLE_FIELD_PREFIX + handles.size();
+            handles.add(handle);
+            writer.addField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, field, METHOD_HANDLE_DESCRIPTOR);
+            writer.addMethod(ACC_PUBLIC | ACC_FINAL, method.getName(), methodType.toMethodDescriptorString())
+                    .field(GETSTATIC, className, field, METHOD_HANDLE_DESCRIPTOR)
+                    .loadParameters(methodType, 1)
+                    .invoke(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", methodType.toMethodDescriptorString())
+                    .returnValue(methodType.returnType())
+                    .end(Math.max(1 + parameterSlots(methodType), slots(methodType.returnType())),
+                            1 + parameterSlots(methodType));
+        }
+        writeConstructor(writer, superName);
+        writeHandleInitializer(writer, className, handles.size());
+        try {
+            final MethodHandles.Lookup spun = define(definingLookup, writer, handles, type);
+            return spun.findConstructor(spun.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (final IllegalAccessException | LinkageError e) {
+            throw new IllegalArgumentException("Can't spin a subclass of " + type + " from "
+                    + definingLookup.lookupClass(), e);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Spins one class implementing {@code functionalInterface} for many targets. Each instance holds a final index,
+     * and the interface method switches on it to pick the handle to call, so a call site that only ever sees one
+     * instance stays monomorphic.
+     *
+     * @param handles each already of the type {@code methodType}
+     * @return a handle that takes the index and returns a new instance
+     */
+    static MethodHandle spinDispatcher(final MethodHandles.Lookup definingLookup, final Class<?> declaringClass,
+                                       final Class<?> functionalInterface, final String methodName,
+                                       final MethodType methodType, final List<MethodHandle> handles) {
+        if (handles.isEmpty()) {
+            throw new IllegalArgumentException("No targets to dispatch to");
+        }
+        final String className = definingLookup.lookupClass().getPackageName().replace('.', '/')
+                + (definingLookup.lookupClass().getPackageName().isEmpty() ? "" : "/")
+                + declaringClass.getSimpleName() + "$$Dispatch";
+        final ClassFileWriter writer = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+                className, "java/lang/Object", internalName(functionalInterface));
+        writer.addField(ACC_PRIVATE | ACC_FINAL, INDEX_FIELD, "I");
+        for (int i = 0; i < handles.size(); i++) {
+            writer.addField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, HANDLE_FIELD_PREFIX + i, METHOD_HANDLE_DESCRIPTOR);
+        }
+        writer.addMethod(ACC_PUBLIC, "<init>", "(I)V")
+                .op1(ALOAD, 0)
+                .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V")
+                .op1(ALOAD, 0)
+                .op1(ILOAD, 1)
+                .field(PUTFIELD, className, INDEX_FIELD, "I")
+                .op(RETURN)
+                .end(2, 2);
+        final String descriptor = methodType.toMethodDescriptorString();
+        final ClassFileWriter.Code dispatch = writer.addMethod(ACC_PUBLIC | ACC_FINAL, methodName, descriptor)
+                .op1(ALOAD, 0)
+                .field(GETFIELD, className, INDEX_FIELD, "I");
+        final ClassFileWriter.Code.TableSwitch tableSwitch = dispatch.tableSwitch(0, handles.size() - 1);
+        // The constructor is only reachable through the returned handle, which is given valid indices
+        tableSwitch.bindDefault();
+        for (int i = 0; i < handles.size(); i++) {
+            tableSwitch.bindCase(i);
+            dispatch.field(GETSTATIC, className, HANDLE_FIELD_PREFIX + i, METHOD_HANDLE_DESCRIPTOR)
+                    .loadParameters(methodType, 1)
+                    .invoke(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", descriptor)
+                    .returnValue(methodType.returnType());
+        }
+        dispatch.end(Math.max(1 + parameterSlots(methodType), slots(methodType.returnType())),
+                1 + parameterSlots(methodType));
+        writeHandleInitializer(writer, className, handles.size());
+        try {
+            final MethodHandles.Lookup spun = define(definingLookup, writer, handles, functionalInterface);
+            return spun.findConstructor(spun.lookupClass(), MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+        } catch (final IllegalAccessException | NoSuchMethodException | LinkageError e) {
+            throw new IllegalArgumentException("Can't spin a dispatcher for " + functionalInterface + " from "
+                    + definingLookup.lookupClass(), e);
+        }
+    }
+
+    /**
+     * Defines a spun class with {@code handles} as its class data. Every class this spinner generates goes through
+     * here, so each one is counted in {@link LambdaMetafactoryMetrics} and recorded as a {@link LambdaSpinEvent}.
+     */
+    private static MethodHandles.Lookup define(final MethodHandles.Lookup definingLookup,
+                                               final ClassFileWriter writer, final List<MethodHandle> handles,
+                                               final Class<?> type) throws IllegalAccessException {
+        final LambdaSpinEvent event = new LambdaSpinEvent();
+        event.begin();
+        final long spinStartTime = LambdaMetafactoryMetrics.spinStartTime();
+        final MethodHandles.Lookup spun = definingLookup.defineHiddenClassWithClassData(writer.toByteArray(),
+                List.copyOf(handles), true);
+        LambdaMetafactoryMetrics.recordSpin(spinStartTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.implementation = spun.lookupClass().getName();
+            event.functionalInterface = type;
+            event.commit();
+        }
+        return spun;
+    }
+
+    static void writeConstructor(final ClassFileWriter writer, final String superName) {
+        writer.addMethod(ACC_PUBLIC, "<init>", "()V")
+                .op1(ALOAD, 0)
+                .invoke(INVOKESPECIAL, superName, "<init>", "()V")
+                .op(RETURN)
+                .end(1, 1);
+    }
+
+    /**
+     * Loads each {@code handleN} field from the class data list.
+     */
+    static void writeHandleInitializer(final ClassFileWriter writer, final String className, final int count) {
+        final ClassFileWriter.Code clinit = writer.addMethod(ACC_STATIC, "<clinit>", "()V");
+        for (int i = 0; i < count; i++) {
+            clinit.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                            "()Ljava/lang/invoke/MethodHandles$Lookup;")
+                    .op2(LDC_W, writer.string("_"))
+                    .op2(LDC_W, writer.classRef(METHOD_HANDLE))
+                    .pushInt(i)
+                    .invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classDataAt",
+                            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)"
+                                    + "Ljava/lang/Object;")
+                    .op2(CHECKCAST, writer.classRef(METHOD_HANDLE))
+                    .field(PUTSTATIC, className, HANDLE_FIELD_PREFIX + i, METHOD_HANDLE_DESCRIPTOR);
+        }
+        clinit.op(RETURN).end(4, 0);
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Executable;
+import java.util.Arrays;
+
+import static java.lang.invoke.LambdaMetafactory.FLAG_BRIDGES;
+import static java.lang.invoke.LambdaMetafactory.FLAG_MARKERS;
+import static java.lang.invoke.LambdaMetafactory.FLAG_SERIALIZABLE;
+
+/**
+ * Bootstrap methods for generated bytecode that wants wrapped lambdas as {@code invokedynamic} call sites or
+ * {@code ldc} dynamic constants. They take the same arguments as {@link java.lang.invoke.LambdaMetafactory}, except
+ * that the name is ignored and the interface comes from the site's type. They spin with the caller's lookup, as
+ * LambdaMetafactory would, but go through the default cache manager, so a site linked to a direct handle shares its
+ * spun class with {@link LambdaMetafactoryWrapper#wrap} calls for the same method and parameters.
+ */
+public final class LambdaBootstraps {
+    private LambdaBootstraps() {}
+
+    /**
+     * {@code invokedynamic} bootstrap whose site takes the captured parameters and returns the lambda.
+     */
+    public static CallSite metafactory(final MethodHandles.Lookup caller, final String name,
+                                       final MethodType factoryType, final MethodHandle implementation) {
+        return altMetafactory(caller, name, factoryType, implementation, 0);
+    }
+
+    /**
+     * Like {@link java.lang.invoke.LambdaMetafactory#altMetafactory}, but the arguments after {@code flags} are only
+     * the marker interfaces and bridge types that {@code flags} calls for.
+     */
+    public static CallSite altMetafactory(final MethodHandles.Lookup caller, final String name,
+                                          final MethodType factoryType, final MethodHandle implementation,
+                                          final int flags, final Object... args) {
+        final LambdaMetafactoryWrapper.Parameters.Builder<?> builder
+                = LambdaMetafactoryWrapper.Parameters.builder(factoryType.returnType());
+        if (parseFlags(builder, flags, args) != args.length) {
+            throw new IllegalArgumentException("Unexpected bootstrap arguments " + Arrays.toString(args));
+        }
+        final MethodType implType = implementation.type();
+        final LambdaMetafactoryWrapper.Shape<?> shape = builder.build()
+                .shape(implType, factoryType.parameterCount());
+        final LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(caller);
+        final Executable executable = reveal(caller, implementation);
+        final LambdaMetafactoryWrapper.CapturingFactory<?> factory = executable == null
+                ? wrapper.prepareMethodHandle(implementation, shape)
+                : wrapper.prepare(executable, shape);
+        return new ConstantCallSite(factory.factoryHandle().asType(factoryType));
+    }
+
+    /**
+     * Dynamic-constant bootstrap whose static arguments after the implementation are the captured parameters.
+     */
+    public static Object lambda(final MethodHandles.Lookup caller, final String name, final Class<?> type,
+                                final MethodHandle implementation, final Object... capturedParameters) {
+        return altLambda(caller, name, type, implementation, 0, capturedParameters);
+    }
+
+    /**
+     * Like {@link #lambda}, but the captured parameters come after whatever {@code flags} calls for, in the order
+     * {@link #altMetafactory} takes them.
+     */
+    public static Object altLambda(final MethodHandles.Lookup caller, final String name, final Class<?> type,
+                                   final MethodHandle implementation, final int flags, final Object... args) {
+        final LambdaMetafactoryWrapper.Parameters.Builder<?> builder
+                = LambdaMetafactoryWrapper.Parameters.builder(type);
+        final int capturedStart = parseFlags(builder, flags, args);
+        builder.addCapturedParameters(Arrays.asList(args).subList(capturedStart, args.length));
+        final LambdaMetafactoryWrapper.Parameters<?> parameters = builder.build();
+        final LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(caller);
+        final Executable executable = reveal(caller, implementation);
+        return type.cast(executable == null
+                ? wrapper.wrapMethodHandle(implementation, parameters)
+                : wrapper.wrap(executable, parameters));
+    }
+
+    // Returns the index of the first argument that flags didn't consume
+    private static int parseFlags(final LambdaMetafactoryWrapper.Parameters.Builder<?> builder, final int flags,
+                                  final Object[] args) {
+        if ((flags & ~(FLAG_SERIALIZABLE | FLAG_MARKERS | FLAG_BRIDGES)) != 0) {
+            throw new IllegalArgumentException("Unsupported flags " + flags);
+        }
+        builder.serializable((flags & FLAG_SERIALIZABLE) != 0);
+        int index = 0;
+        try {
+            if ((flags & FLAG_MARKERS) != 0) {
+                final int count = (Integer) args[index++];
+                for (int i = 0; i < count; i++) {
+                    builder.addMarkerInterface((Class<?>) args[index++]);
+                }
+            }
+            if ((flags & FLAG_BRIDGES) != 0) {
+                final int count = (Integer) args[index++];
+                for (int i = 0; i < count; i++) {
+                    builder.addBridgeOverload((MethodType) args[index++]);
+                }
+            }
+        } catch (final ClassCastException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed bootstrap arguments " + Arrays.toString(args), e);
+        }
+        return index;
+    }
+
+    // Null if the handle isn't direct, in which case it's cached by identity instead
+    private static Executable reveal(final MethodHandles.Lookup caller, final MethodHandle implementation) {
+        final MethodHandleInfo info;
+        try {
+            info = caller.revealDirect(implementation);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+        // Field accessors aren't executables, and a super call can't be made through the reflected method, which
+        // would dispatch virtually
+        if (info.getReferenceKind() <= MethodHandleInfo.REF_putStatic
+                || info.getReferenceKind() == MethodHandleInfo.REF_invokeSpecial) {
+            return null;
+        }
+        return info.reflectAs(Executable.class, caller);
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+public class LambdaMetafactoryBoundedCacheManager implements LambdaMetafactoryCacheManager {
+    private record ImplementationKey<I, P>(I implementation, P parameters) {}
+
+    private final BoundedCache<Class<?>, LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor> descriptors;
+    private final BoundedCache<Executable, MethodHandle> unreflected;
+    private final BoundedCache<ImplementationKey<?, ?>, LambdaMetafactoryWrapper.CapturingFactory<?>> factories;
+    private final BoundedCache<ImplementationKey<?, ?>, Object> wrappers;
+    private final BoundedCache<LambdaMetafactoryWrapper.SerializedLambdaKey, LambdaMetafactoryWrapper.CapturingFactory<?>>
+            deserialized;
+    private final BoundedCache<LambdaMetafactoryWrapper.SerializedLambdaMethodDescription, Executable> methods;
+
+    protected LambdaMetafactoryBoundedCacheManager(final Builder builder) {
+        final long expireAfterAccessNanos = builder.expireAfterAccess == null
+                ? -1 : builder.expireAfterAccess.toNanos();
+        descriptors = new BoundedCache<>(builder.maximumDescriptors, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
+        unreflected = new BoundedCache<>(builder.maximumUnreflected, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.UNREFLECTED);
+        factories = new BoundedCache<>(builder.maximumFactories, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.FACTORY);
+        wrappers = new BoundedCache<>(builder.maximumWrappers, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        deserialized = new BoundedCache<>(builder.maximumDeserialized, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.DESERIALIZED);
+        methods = new BoundedCache<>(builder.maximumMethods, expireAfterAccessNanos, builder.ticker,
+                LambdaMetafactoryMetrics.CacheTier.METHOD);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) wrappers.computeIfAbsent(new ImplementationKey<>(implementation, parameters),
+                key -> wrapper.wrapMethodHandleUncached(implementation, parameters));
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor getDescriptor(LambdaMetafactoryWrapper wrapper, Class<? super T> functionalInterface) {
+        return descriptors.computeIfAbsent(functionalInterface, wrapper::getDescriptorUncached);
+    }
+
+    @Override
+    public MethodHandle getUnreflectedImplementation(LambdaMetafactoryWrapper wrapper, Executable implementation) {
+        return unreflected.computeIfAbsent(implementation, wrapper::getUnreflectedImplementationUncached);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrap(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) wrappers.computeIfAbsent(new ImplementationKey<>(implementation, parameters),
+                key -> wrapper.wrapUncached(implementation, parameters));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapTiered(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters, int promotionThreshold) {
+        return ((Supplier<T>) wrappers.computeIfAbsent(new ImplementationKey<>(implementation,
+                        new LambdaMetafactoryWrapper.TieredKey(parameters, promotionThreshold)),
+                key -> wrapper.wrapTieredUncached(implementation, parameters, promotionThreshold))).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) factories.computeIfAbsent(
+                new ImplementationKey<>(implementation, shape), key -> wrapper.prepareUncached(implementation, shape));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) factories.computeIfAbsent(
+                new ImplementationKey<>(implementation, shape),
+                key -> wrapper.prepareMethodHandleUncached(implementation, shape));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapMethods(LambdaMetafactoryWrapper wrapper, Class<T> type, Map<Method, MethodHandle> implementations) {
+        return (T) wrappers.computeIfAbsent(new ImplementationKey<>(type, Map.copyOf(implementations)),
+                key -> wrapper.wrapMethodsUncached(type, implementations));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(LambdaMetafactoryWrapper wrapper, Class<?> declaringClass, Class<? super T> functionalInterface) {
+        return (LambdaMetafactoryWrapper.SharedDispatcher<T>) wrappers.computeIfAbsent(
+                new ImplementationKey<>(declaringClass, functionalInterface),
+                key -> wrapper.getSharedDispatcherUncached(declaringClass, functionalInterface));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapField(LambdaMetafactoryWrapper wrapper, Field field, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) wrappers.computeIfAbsent(
+                new ImplementationKey<>(field, new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters)),
+                key -> wrapper.wrapFieldUncached(field, accessMode, parameters));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapVarHandle(LambdaMetafactoryWrapper wrapper, VarHandle varHandle, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) wrappers.computeIfAbsent(
+                new ImplementationKey<>(varHandle, new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters)),
+                key -> wrapper.wrapVarHandleUncached(varHandle, accessMode, parameters));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> PropertyAccessors<T> getPropertyAccessors(LambdaMetafactoryWrapper wrapper, Class<T> type) {
+        return (PropertyAccessors<T>) wrappers.computeIfAbsent(new ImplementationKey<>(type, PropertyAccessors.class),
+                key -> wrapper.getPropertyAccessorsUncached(type));
+    }
+
+    @Override
+    public Object deserializeLambda(SerializedLambda serializedLambda) {
+        return LambdaMetafactoryWrapper.createDeserialized(
+                deserialized.computeIfAbsent(LambdaMetafactoryWrapper.SerializedLambdaKey.of(serializedLambda),
+                        key -> LambdaMetafactoryWrapper.prepareDeserializedUncached(serializedLambda)),
+                serializedLambda);
+    }
+
+    @Override
+    public void clearCaches() {
+        descriptors.clear();
+        unreflected.clear();
+        factories.clear();
+        wrappers.clear();
+        deserialized.clear();
+        methods.clear();
+    }
+
+    @Override
+    public Executable findMethod(LambdaMetafactoryWrapper wrapper, LambdaMetafactoryWrapper.SerializedLambdaMethodDescription methodDescription) {
+        return methods.computeIfAbsent(methodDescription, LambdaMetafactoryWrapper::findMethodUncached);
+    }
+
+    // These caches aren't partitioned by class loader
+    @Override
+    public Map<String, Integer> getCachedEntriesPerClassLoader() {
+        return Map.of("all class loaders", descriptors.size() + unreflected.size() + factories.size()
+                + wrappers.size() + deserialized.size() + methods.size());
+    }
+
+    public static class Builder {
+        // Defaults
+        private int maximumDescriptors = 1024;
+        private int maximumUnreflected = 4096;
+        private int maximumFactories = 4096;
+        private int maximumWrappers = 4096;
+        private int maximumDeserialized = 4096;
+        private int maximumMethods = 4096;
+        private Duration expireAfterAccess = null;
+        private LongSupplier ticker = System::nanoTime;
+
+        Builder() {}
+
+        public Builder maximumDescriptors(final int maximumDescriptors) {
+            this.maximumDescriptors = maximumDescriptors;
+            return this;
+        }
+
+        public Builder maximumUnreflected(final int maximumUnreflected) {
+            this.maximumUnreflected = maximumUnreflected;
+            return this;
+        }
+
+        public Builder maximumFactories(final int maximumFactories) {
+            this.maximumFactories = maximumFactories;
+            return this;
+        }
+
+        public Builder maximumWrappers(final int maximumWrappers) {
+            this.maximumWrappers = maximumWrappers;
+            return this;
+        }
+
+        public Builder maximumDeserialized(final int maximumDeserialized) {
+            this.maximumDeserialized = maximumDeserialized;
+            return this;
+        }
+
+        public Builder maximumMethods(final int maximumMethods) {
+            this.maximumMethods = maximumMethods;
+            return this;
+        }
+
+        public Builder expireAfterAccess(final Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        public Builder ticker(final LongSupplier ticker) {
+            this.ticker = requireNonNull(ticker);
+            return this;
+        }
+
+        public LambdaMetafactoryBoundedCacheManager build() {
+            return new LambdaMetafactoryBoundedCacheManager(this);
+        }
+    }
+}
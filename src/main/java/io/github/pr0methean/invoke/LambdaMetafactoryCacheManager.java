@@ -2,7 +2,11 @@ package io.github.pr0methean.invoke;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
 
 public interface LambdaMetafactoryCacheManager {
     <T> T wrapMethodHandle(final LambdaMetafactoryWrapper wrapper,
@@ -18,10 +22,48 @@ public interface LambdaMetafactoryCacheManager {
                final Executable implementation,
                final LambdaMetafactoryWrapper.Parameters<T> parameters);
 
+    <T> T wrapTiered(final LambdaMetafactoryWrapper wrapper,
+                     final Executable implementation,
+                     final LambdaMetafactoryWrapper.Parameters<T> parameters,
+                     final int promotionThreshold);
+
+    <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(final LambdaMetafactoryWrapper wrapper,
+                                                             final Executable implementation,
+                                                             final LambdaMetafactoryWrapper.Shape<T> shape);
+
+    <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(final LambdaMetafactoryWrapper wrapper,
+                                                                         final MethodHandle implementation,
+                                                                         final LambdaMetafactoryWrapper.Shape<T> shape);
+
+    <T> T wrapMethods(final LambdaMetafactoryWrapper wrapper,
+                      final Class<T> type,
+                      final Map<Method, MethodHandle> implementations);
+
+    <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(final LambdaMetafactoryWrapper wrapper,
+                                                                         final Class<?> declaringClass,
+                                                                         final Class<? super T> functionalInterface);
+
+    <T> T wrapField(final LambdaMetafactoryWrapper wrapper,
+                    final Field field,
+                    final VarHandle.AccessMode accessMode,
+                    final LambdaMetafactoryWrapper.Parameters<T> parameters);
+
+    <T> T wrapVarHandle(final LambdaMetafactoryWrapper wrapper,
+                        final VarHandle varHandle,
+                        final VarHandle.AccessMode accessMode,
+                        final LambdaMetafactoryWrapper.Parameters<T> parameters);
+
+    <T> PropertyAccessors<T> getPropertyAccessors(final LambdaMetafactoryWrapper wrapper, final Class<T> type);
+
     Object deserializeLambda(final SerializedLambda serializedLambda);
 
     void clearCaches();
 
     Executable findMethod(LambdaMetafactoryWrapper wrapper,
                           LambdaMetafactoryWrapper.SerializedLambdaMethodDescription methodDescription);
+
+    // Reported by LambdaMetafactoryMetrics for every manager a wrapper has used; empty if this one keeps no count
+    default Map<String, Integer> getCachedEntriesPerClassLoader() {
+        return Map.of();
+    }
 }
@@ -0,0 +1,357 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static io.github.pr0methean.invoke.LambdaMetafactoryDefaultCacheManager.SINGLE_FLIGHT;
+import static io.github.pr0methean.invoke.LambdaMetafactoryDefaultCacheManager.newConcurrentMap;
+import static io.github.pr0methean.invoke.LambdaMetafactoryWrapper.classForSlashDelimitedName;
+
+/**
+ * Keeps everything cached for a class in a {@link ClassValue} on that class, so nothing outside the class refers to
+ * its entries and unloading its class loader releases them all, where {@link LambdaMetafactoryDefaultCacheManager}'s
+ * per-loader caches hold the loader's classes strongly. A lookup costs one {@link ClassValue#get} and one hash lookup.
+ * <p>
+ * An entry can also refer to its functional interface, marker interfaces and captured values, whose loaders may be
+ * younger than the implementation's, as when a plugin wraps a library method. So each entry goes on whichever of
+ * those classes has the youngest loader, and if their loaders aren't all on one chain of parents, into a weak-key map
+ * instead. Wrapped method handles and VarHandles have no declaring class, so they're cached in weak-key maps too.
+ * Honors {@link LambdaMetafactoryDefaultCacheManager#SINGLE_FLIGHT_PROPERTY}.
+ */
+public class LambdaMetafactoryClassValueCacheManager implements LambdaMetafactoryCacheManager {
+    private static final LambdaMetafactoryClassValueCacheManager INSTANCE
+            = new LambdaMetafactoryClassValueCacheManager();
+
+    private static final class PerClassCache {
+        // Racing threads may both compute these, which is harmless
+        volatile LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor descriptor;
+        volatile PropertyAccessors<?> propertyAccessors;
+        // Keyed by executables, fields and serialized lambdas that this class, or one whose loader is an ancestor of
+        // its loader, declares or implements
+        final ConcurrentMap<Executable, MethodHandle> unreflected = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> wrappers
+                = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.TieredKey, Supplier<?>>> tieredWrappers
+                = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.Shape<?>,
+                LambdaMetafactoryWrapper.CapturingFactory<?>>> factories = newConcurrentMap();
+        final ConcurrentMap<Field, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> fieldWrappers
+                = newConcurrentMap();
+        // Keyed by method name and descriptor
+        final ConcurrentMap<String, Executable> methods = newConcurrentMap();
+        final ConcurrentMap<LambdaMetafactoryWrapper.SerializedLambdaKey, LambdaMetafactoryWrapper.CapturingFactory<?>>
+                deserialized = newConcurrentMap();
+        // Keyed by the type to implement or the declaring class to dispatch to
+        final ConcurrentMap<Class<?>, Map<Map<Method, MethodHandle>, Object>> multiMethodWrappers
+                = newConcurrentMap();
+        final ConcurrentMap<Class<?>, Map<Class<?>, LambdaMetafactoryWrapper.SharedDispatcher<?>>> sharedDispatchers
+                = newConcurrentMap();
+    }
+
+    // Replaced rather than cleared, since a ClassValue can't enumerate its classes
+    private volatile ClassValue<PerClassCache> cache = newCache();
+    private final Map<MethodHandle, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> methodHandleWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    private final Map<MethodHandle, Map<LambdaMetafactoryWrapper.Shape<?>,
+            LambdaMetafactoryWrapper.CapturingFactory<?>>> methodHandleFactories
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.FACTORY, SINGLE_FLIGHT);
+    private final Map<VarHandle, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> varHandleWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    // For entries whose classes' loaders have no youngest one
+    private final Map<Executable, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> mixedLoaderWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    private final Map<Executable, Map<LambdaMetafactoryWrapper.TieredKey, Supplier<?>>> mixedLoaderTieredWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    private final Map<Executable, Map<LambdaMetafactoryWrapper.Shape<?>,
+            LambdaMetafactoryWrapper.CapturingFactory<?>>> mixedLoaderFactories
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.FACTORY, SINGLE_FLIGHT);
+    private final Map<Field, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> mixedLoaderFieldWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    private final Map<Class<?>, Map<Map<Method, MethodHandle>, Object>> mixedLoaderMultiMethodWrappers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+    private final Map<Class<?>, Map<Class<?>, LambdaMetafactoryWrapper.SharedDispatcher<?>>>
+            mixedLoaderSharedDispatchers
+            = new ConcurrentWeakKeyMap<>(LambdaMetafactoryMetrics.CacheTier.WRAPPER, SINGLE_FLIGHT);
+
+    protected LambdaMetafactoryClassValueCacheManager() {}
+
+    public static LambdaMetafactoryClassValueCacheManager getInstance() {
+        return INSTANCE;
+    }
+
+    private static ClassValue<PerClassCache> newCache() {
+        return new ClassValue<>() {
+            @Override
+            protected PerClassCache computeValue(final Class<?> type) {
+                return new PerClassCache();
+            }
+        };
+    }
+
+    private PerClassCache cacheFor(final Class<?> type) {
+        return cache.get(type);
+    }
+
+    // True if ancestor is descendant or one of its parents, so it can't be unloaded first
+    private static boolean isAncestor(final ClassLoader ancestor, ClassLoader descendant) {
+        if (ancestor == null) {
+            return true;
+        }
+        while (descendant != null) {
+            if (descendant == ancestor) {
+                return true;
+            }
+            descendant = descendant.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Returns whichever of {@code owner} and {@code others} has the youngest loader, preferring {@code owner}, as long
+     * as every other loader is one of its ancestors; null otherwise.
+     */
+    private static Class<?> youngest(Class<?> owner, final Iterable<? extends Class<?>> others) {
+        ClassLoader ownerLoader = owner.getClassLoader();
+        for (final Class<?> other : others) {
+            final ClassLoader otherLoader = other.getClassLoader();
+            if (otherLoader == ownerLoader || isAncestor(otherLoader, ownerLoader)) {
+                continue;
+            }
+            if (!isAncestor(ownerLoader, otherLoader)) {
+                return null;
+            }
+            owner = other;
+            ownerLoader = otherLoader;
+        }
+        return owner;
+    }
+
+    private static List<Class<?>> referencedClasses(final LambdaMetafactoryWrapper.Parameters<?> parameters) {
+        final List<Class<?>> classes = new ArrayList<>(parameters.markerInterfaces());
+        classes.add(parameters.functionalInterface());
+        for (final Object captured : parameters.capturedParameters()) {
+            if (captured != null) {
+                classes.add(captured.getClass());
+            }
+        }
+        return classes;
+    }
+
+    private static List<Class<?>> referencedClasses(final LambdaMetafactoryWrapper.Shape<?> shape) {
+        final List<Class<?>> classes = new ArrayList<>(shape.capturedTypes());
+        classes.addAll(shape.markerInterfaces());
+        classes.add(shape.functionalInterface());
+        return classes;
+    }
+
+    private static List<Class<?>> referencedClasses(final Map<Method, MethodHandle> implementations) {
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final MethodHandle handle : implementations.values()) {
+            classes.addAll(handle.type().parameterList());
+            classes.add(handle.type().returnType());
+        }
+        return classes;
+    }
+
+    private static <K, V> V computeIfAbsent(final Map<K, V> map, final K key,
+                                            final LambdaMetafactoryMetrics.CacheTier tier,
+                                            final Function<? super K, ? extends V> loader) {
+        LambdaMetafactoryMetrics.recordRequest(tier);
+        final V existing = map.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return map.computeIfAbsent(key, key_ -> {
+            LambdaMetafactoryMetrics.recordMiss(tier);
+            return loader.apply(key_);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) computeIfAbsent(methodHandleWrappers.computeIfAbsent(implementation, impl -> newConcurrentMap()),
+                parameters, LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                params -> wrapper.wrapMethodHandleUncached(implementation, params));
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor getDescriptor(LambdaMetafactoryWrapper wrapper, Class<? super T> functionalInterface) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
+        final PerClassCache classCache = cacheFor(functionalInterface);
+        LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor descriptor = classCache.descriptor;
+        if (descriptor == null) {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
+            descriptor = wrapper.getDescriptorUncached(functionalInterface);
+            classCache.descriptor = descriptor;
+        }
+        return descriptor;
+    }
+
+    @Override
+    public MethodHandle getUnreflectedImplementation(LambdaMetafactoryWrapper wrapper, Executable implementation) {
+        return computeIfAbsent(cacheFor(implementation.getDeclaringClass()).unreflected, implementation,
+                LambdaMetafactoryMetrics.CacheTier.UNREFLECTED, wrapper::getUnreflectedImplementationUncached);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrap(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        final Class<?> owner = youngest(implementation.getDeclaringClass(), referencedClasses(parameters));
+        return (T) computeIfAbsent((owner == null ? mixedLoaderWrappers : cacheFor(owner).wrappers)
+                        .computeIfAbsent(implementation, impl -> newConcurrentMap()),
+                parameters, LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                params -> wrapper.wrapUncached(implementation, params));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapTiered(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters, int promotionThreshold) {
+        final Class<?> owner = youngest(implementation.getDeclaringClass(), referencedClasses(parameters));
+        return (T) computeIfAbsent((owner == null ? mixedLoaderTieredWrappers : cacheFor(owner).tieredWrappers)
+                        .computeIfAbsent(implementation, impl -> newConcurrentMap()),
+                new LambdaMetafactoryWrapper.TieredKey(parameters, promotionThreshold),
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                key -> wrapper.wrapTieredUncached(implementation, parameters, promotionThreshold)).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        final Class<?> owner = youngest(implementation.getDeclaringClass(), referencedClasses(shape));
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) computeIfAbsent(
+                (owner == null ? mixedLoaderFactories : cacheFor(owner).factories)
+                        .computeIfAbsent(implementation, impl -> newConcurrentMap()),
+                shape, LambdaMetafactoryMetrics.CacheTier.FACTORY,
+                shape_ -> wrapper.prepareUncached(implementation, shape_));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) computeIfAbsent(
+                methodHandleFactories.computeIfAbsent(implementation, impl -> newConcurrentMap()),
+                shape, LambdaMetafactoryMetrics.CacheTier.FACTORY,
+                shape_ -> wrapper.prepareMethodHandleUncached(implementation, shape_));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapMethods(LambdaMetafactoryWrapper wrapper, Class<T> type, Map<Method, MethodHandle> implementations) {
+        final Class<?> owner = youngest(type, referencedClasses(implementations));
+        return (T) computeIfAbsent(owner == null
+                        ? mixedLoaderMultiMethodWrappers.computeIfAbsent(type, type_ -> newConcurrentMap())
+                        : cacheFor(owner).multiMethodWrappers.computeIfAbsent(type, type_ -> newConcurrentMap()),
+                Map.copyOf(implementations),
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                implementations_ -> wrapper.wrapMethodsUncached(type, implementations_));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(LambdaMetafactoryWrapper wrapper, Class<?> declaringClass, Class<? super T> functionalInterface) {
+        final Class<?> owner = youngest(declaringClass, List.of(functionalInterface));
+        return (LambdaMetafactoryWrapper.SharedDispatcher<T>) computeIfAbsent(owner == null
+                        ? mixedLoaderSharedDispatchers.computeIfAbsent(declaringClass, clazz -> newConcurrentMap())
+                        : cacheFor(owner).sharedDispatchers.computeIfAbsent(declaringClass,
+                                clazz -> newConcurrentMap()),
+                functionalInterface,
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                iface -> wrapper.getSharedDispatcherUncached(declaringClass, functionalInterface));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapField(LambdaMetafactoryWrapper wrapper, Field field, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        final Class<?> owner = youngest(field.getDeclaringClass(), referencedClasses(parameters));
+        return (T) computeIfAbsent((owner == null ? mixedLoaderFieldWrappers : cacheFor(owner).fieldWrappers)
+                        .computeIfAbsent(field, field_ -> newConcurrentMap()),
+                new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters),
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                key -> wrapper.wrapFieldUncached(field, accessMode, parameters));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapVarHandle(LambdaMetafactoryWrapper wrapper, VarHandle varHandle, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return (T) computeIfAbsent(varHandleWrappers.computeIfAbsent(varHandle, handle -> newConcurrentMap()),
+                new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters),
+                LambdaMetafactoryMetrics.CacheTier.WRAPPER,
+                key -> wrapper.wrapVarHandleUncached(varHandle, accessMode, parameters));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> PropertyAccessors<T> getPropertyAccessors(LambdaMetafactoryWrapper wrapper, Class<T> type) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final PerClassCache classCache = cacheFor(type);
+        PropertyAccessors<?> accessors = classCache.propertyAccessors;
+        if (accessors == null) {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+            accessors = wrapper.getPropertyAccessorsUncached(type);
+            classCache.propertyAccessors = accessors;
+        }
+        return (PropertyAccessors<T>) accessors;
+    }
+
+    @Override
+    public Object deserializeLambda(SerializedLambda serializedLambda) {
+        final LambdaMetafactoryWrapper.SerializedLambdaKey key
+                = LambdaMetafactoryWrapper.SerializedLambdaKey.of(serializedLambda);
+        return LambdaMetafactoryWrapper.createDeserialized(
+                computeIfAbsent(cacheFor(classForSlashDelimitedName(key.implClass())).deserialized, key,
+                        LambdaMetafactoryMetrics.CacheTier.DESERIALIZED,
+                        key_ -> LambdaMetafactoryWrapper.prepareDeserializedUncached(serializedLambda)),
+                serializedLambda);
+    }
+
+    @Override
+    public void clearCaches() {
+        cache = newCache();
+        methodHandleWrappers.clear();
+        methodHandleFactories.clear();
+        varHandleWrappers.clear();
+        mixedLoaderWrappers.clear();
+        mixedLoaderTieredWrappers.clear();
+        mixedLoaderFactories.clear();
+        mixedLoaderFieldWrappers.clear();
+        mixedLoaderMultiMethodWrappers.clear();
+        mixedLoaderSharedDispatchers.clear();
+    }
+
+    // Entries held in the ClassValue can't be enumerated, so only the ones kept outside it are counted
+    @Override
+    public Map<String, Integer> getCachedEntriesPerClassLoader() {
+        final Map<String, Integer> result = new TreeMap<>();
+        result.put("mixed class loaders", nestedSize(mixedLoaderWrappers) + nestedSize(mixedLoaderTieredWrappers)
+                + nestedSize(mixedLoaderFactories) + nestedSize(mixedLoaderFieldWrappers)
+                + nestedSize(mixedLoaderMultiMethodWrappers) + nestedSize(mixedLoaderSharedDispatchers));
+        result.put("method handles", nestedSize(methodHandleWrappers) + nestedSize(methodHandleFactories)
+                + nestedSize(varHandleWrappers));
+        return result;
+    }
+
+    private static int nestedSize(final Map<?, ? extends Map<?, ?>> map) {
+        return map.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public Executable findMethod(LambdaMetafactoryWrapper wrapper, LambdaMetafactoryWrapper.SerializedLambdaMethodDescription methodDescription) {
+        final Class<?> implClass = classForSlashDelimitedName(methodDescription.slashDelimitedClassName());
+        return computeIfAbsent(cacheFor(implClass).methods,
+                methodDescription.methodName() + methodDescription.methodSignature(),
+                LambdaMetafactoryMetrics.CacheTier.METHOD,
+                key -> LambdaMetafactoryWrapper.findMethodUncached(methodDescription));
+    }
+}
@@ -2,41 +2,97 @@ package io.github.pr0methean.invoke;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class LambdaMetafactoryDefaultCacheManager implements LambdaMetafactoryCacheManager {
+    /**
+     * If true, a cache miss spins outside every lock. Concurrent misses on the same key wait for the one spin, and
+     * misses on other keys don't wait at all. Otherwise a spin holds a lock on part of its map, which also pins a
+     * virtual thread to its carrier.
+     */
+    public static final String SINGLE_FLIGHT_PROPERTY = "io.github.pr0methean.invoke.singleFlight";
+    static final boolean SINGLE_FLIGHT = Boolean.getBoolean(SINGLE_FLIGHT_PROPERTY);
     protected LambdaMetafactoryDefaultCacheManager() {}
     private static final LambdaMetafactoryDefaultCacheManager INSTANCE = new LambdaMetafactoryDefaultCacheManager();
-    // Don't want identity semantics
-    private static final Map<SerializedLambda, Object> DESERIALIZATION_CACHE
-            = Collections.synchronizedMap(new WeakHashMap<>());
-    private static final Map<LambdaMetafactoryWrapper.SerializedLambdaMethodDescription, Executable> FIND_METHOD_CACHE
-            = Collections.synchronizedMap(new WeakHashMap<>());
+    // Serialized lambdas name classes that are visible from this class's loader, which this class can't outlast, so
+    // holding them strongly won't prevent unloading
+    private static final ConcurrentHashMap<String, Class<?>> CLASSES_BY_SLASH_DELIMITED_NAME = new ConcurrentHashMap<>();
     public static LambdaMetafactoryDefaultCacheManager getInstance() {
         return INSTANCE;
     }
 
     private static class ClassLoaderSpecificCache {
-        final ConcurrentHashMap<Class<?>, LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor> descriptors = new ConcurrentHashMap<>();
-        final ConcurrentHashMap<Executable, MethodHandle> unreflected = new ConcurrentHashMap<>();
-        final ConcurrentHashMap<Executable, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> cachedWrappers
-                = new ConcurrentHashMap<>();
+        final ConcurrentMap<Class<?>, LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor> descriptors = newConcurrentMap();
+        final ConcurrentMap<Executable, MethodHandle> unreflected = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> cachedWrappers
+                = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.TieredKey, Supplier<?>>> tieredWrappers
+                = newConcurrentMap();
+        final ConcurrentMap<Executable, Map<LambdaMetafactoryWrapper.Shape<?>,
+                LambdaMetafactoryWrapper.CapturingFactory<?>>> factories = newConcurrentMap();
+        // Per implementation class, keyed by method name and descriptor
+        final ConcurrentMap<Class<?>, Map<String, Executable>> methods = newConcurrentMap();
+        final ConcurrentMap<LambdaMetafactoryWrapper.SerializedLambdaKey, LambdaMetafactoryWrapper.CapturingFactory<?>>
+                deserialized = newConcurrentMap();
+        final ConcurrentMap<Class<?>, Map<Map<Method, MethodHandle>, Object>> multiMethodWrappers
+                = newConcurrentMap();
+        // Per declaring class, keyed by functional interface
+        final ConcurrentMap<Class<?>, Map<Class<?>, LambdaMetafactoryWrapper.SharedDispatcher<?>>> sharedDispatchers
+                = newConcurrentMap();
+        final ConcurrentMap<Class<?>, PropertyAccessors<?>> propertyAccessors = newConcurrentMap();
+        final ConcurrentMap<Field, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> fieldWrappers
+                = newConcurrentMap();
 
         void clear() {
             descriptors.clear();
             unreflected.clear();
             cachedWrappers.clear();
+            tieredWrappers.clear();
+            factories.clear();
+            methods.clear();
+            deserialized.clear();
+            multiMethodWrappers.clear();
+            sharedDispatchers.clear();
+            propertyAccessors.clear();
+            fieldWrappers.clear();
+        }
+
+        int size() {
+            return descriptors.size() + unreflected.size()
+                    + cachedWrappers.values().stream().mapToInt(Map::size).sum()
+                    + tieredWrappers.values().stream().mapToInt(Map::size).sum()
+                    + factories.values().stream().mapToInt(Map::size).sum()
+                    + methods.values().stream().mapToInt(Map::size).sum()
+                    + deserialized.size()
+                    + multiMethodWrappers.values().stream().mapToInt(Map::size).sum()
+                    + sharedDispatchers.values().stream().mapToInt(Map::size).sum()
+                    + propertyAccessors.size()
+                    + fieldWrappers.values().stream().mapToInt(Map::size).sum();
         }
     }
 
     static <K, V> Map<K, V> newThreadSafeWeakKeyMap() {
-        return Collections.synchronizedMap(new WeakHashMap<>());
+        return newThreadSafeWeakKeyMap(null);
+    }
+
+    static <K, V> Map<K, V> newThreadSafeWeakKeyMap(final LambdaMetafactoryMetrics.CacheTier tier) {
+        return new ConcurrentWeakKeyMap<>(tier, SINGLE_FLIGHT);
+    }
+
+    static <K, V> ConcurrentMap<K, V> newConcurrentMap() {
+        return SINGLE_FLIGHT ? new SingleFlight.ConcurrentCache<>() : new ConcurrentHashMap<>();
     }
 
     private static boolean isReferencedByClassLoader(final Class<?> declaringClass) {
@@ -55,13 +111,32 @@ public class LambdaMetafactoryDefaultCacheManager implements LambdaMetafactoryCa
             = newThreadSafeWeakKeyMap();
     private static final ClassLoaderSpecificCache CACHE_FOR_IMMORTAL_CLASSLOADERS = new ClassLoaderSpecificCache();
     private static final Map<Class<?>, LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor> ANON_AND_HIDDEN_DESCRIPTORS
-            = newThreadSafeWeakKeyMap();
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
     private static final Map<Executable, MethodHandle> ANON_AND_HIDDEN_UNREFLECTED
-            = newThreadSafeWeakKeyMap();
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.UNREFLECTED);
     private static final Map<Executable, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> ANON_AND_HIDDEN_WRAPPERS
-            = newThreadSafeWeakKeyMap();
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<Executable, Map<LambdaMetafactoryWrapper.TieredKey, Supplier<?>>> ANON_AND_HIDDEN_TIERED_WRAPPERS
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<Class<?>, Map<Map<Method, MethodHandle>, Object>> ANON_AND_HIDDEN_MULTI_METHOD_WRAPPERS
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<Class<?>, Map<Class<?>, LambdaMetafactoryWrapper.SharedDispatcher<?>>>
+            ANON_AND_HIDDEN_SHARED_DISPATCHERS = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<Class<?>, PropertyAccessors<?>> ANON_AND_HIDDEN_PROPERTY_ACCESSORS
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<Field, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> ANON_AND_HIDDEN_FIELD_WRAPPERS
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    private static final Map<VarHandle, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> VAR_HANDLE_WRAPPERS
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
     private static final Map<MethodHandle, Map<LambdaMetafactoryWrapper.Parameters<?>, Object>> METHOD_HANDLE_WRAPPERS
-            = newThreadSafeWeakKeyMap();
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+    // Inner maps hold shapes strongly, since a shape is usually unreachable as soon as the lookup returns
+    private static final Map<Executable, Map<LambdaMetafactoryWrapper.Shape<?>,
+            LambdaMetafactoryWrapper.CapturingFactory<?>>> ANON_AND_HIDDEN_FACTORIES
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.FACTORY);
+    private static final Map<MethodHandle, Map<LambdaMetafactoryWrapper.Shape<?>,
+            LambdaMetafactoryWrapper.CapturingFactory<?>>> METHOD_HANDLE_FACTORIES
+            = newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.FACTORY);
 
     static {
         final Set<ClassLoader> classLoadersThisClassCannotOutlast = Collections.newSetFromMap(new IdentityHashMap<>(3));
@@ -81,47 +156,196 @@ public class LambdaMetafactoryDefaultCacheManager implements LambdaMetafactoryCa
     @SuppressWarnings("unchecked")
     @Override
     public <T> T wrapMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
         return (T) METHOD_HANDLE_WRAPPERS
-                .computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap())
-                .computeIfAbsent(parameters, params -> wrapper.wrapMethodHandleUncached(implementation, params));
+                .computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER))
+                .computeIfAbsent(parameters, params -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.wrapMethodHandleUncached(implementation, params);
+                });
     }
 
     @Override
     public <T> LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor getDescriptor(LambdaMetafactoryWrapper wrapper, Class<? super T> functionalInterface) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
+        final Function<Class<?>, LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor> loader = iface -> {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.DESCRIPTOR);
+            return wrapper.getDescriptorUncached(iface);
+        };
         if (!isReferencedByClassLoader(functionalInterface)) {
-            return ANON_AND_HIDDEN_DESCRIPTORS.computeIfAbsent(functionalInterface, wrapper::getDescriptorUncached);
+            return ANON_AND_HIDDEN_DESCRIPTORS.computeIfAbsent(functionalInterface, loader);
         }
         return getClassLoaderSpecificCache(functionalInterface).descriptors
-                .computeIfAbsent(functionalInterface, wrapper::getDescriptorUncached);
+                .computeIfAbsent(functionalInterface, loader);
     }
 
     @Override
     public MethodHandle getUnreflectedImplementation(LambdaMetafactoryWrapper wrapper, Executable implementation) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.UNREFLECTED);
+        final Function<Executable, MethodHandle> loader = impl -> {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.UNREFLECTED);
+            return wrapper.getUnreflectedImplementationUncached(impl);
+        };
         final Class<?> declaringClass = implementation.getDeclaringClass();
         if (!isReferencedByClassLoader(declaringClass)) {
-            return ANON_AND_HIDDEN_UNREFLECTED.computeIfAbsent(implementation, wrapper::getUnreflectedImplementationUncached);
+            return ANON_AND_HIDDEN_UNREFLECTED.computeIfAbsent(implementation, loader);
         }
         return getClassLoaderSpecificCache(declaringClass)
-                .unreflected.computeIfAbsent(implementation, wrapper::getUnreflectedImplementationUncached);
+                .unreflected.computeIfAbsent(implementation, loader);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> T wrap(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Function<LambdaMetafactoryWrapper.Parameters<?>, Object> loader = params -> {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+            return wrapper.wrapUncached(implementation, params);
+        };
         final Class<?> declaringClass = implementation.getDeclaringClass();
         if (!isReferencedByClassLoader(declaringClass)) {
             return (T) ANON_AND_HIDDEN_WRAPPERS
-                    .computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap())
-                    .computeIfAbsent(parameters, params -> wrapper.wrapUncached(implementation, params));
+                    .computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER))
+                    .computeIfAbsent(parameters, loader);
         }
         ClassLoaderSpecificCache classLoaderSpecificCache = getClassLoaderSpecificCache(declaringClass);
-        return (T) classLoaderSpecificCache.cachedWrappers.computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap())
-                .computeIfAbsent(parameters, params -> wrapper.wrapUncached(implementation, params));
+        return (T) classLoaderSpecificCache.cachedWrappers
+                .computeIfAbsent(implementation, impl -> newThreadSafeWeakKeyMap(LambdaMetafactoryMetrics.CacheTier.WRAPPER))
+                .computeIfAbsent(parameters, loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapTiered(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters, int promotionThreshold) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Class<?> declaringClass = implementation.getDeclaringClass();
+        final Map<Executable, Map<LambdaMetafactoryWrapper.TieredKey, Supplier<?>>> cache
+                = isReferencedByClassLoader(declaringClass)
+                ? getClassLoaderSpecificCache(declaringClass).tieredWrappers
+                : ANON_AND_HIDDEN_TIERED_WRAPPERS;
+        return (T) cache
+                .computeIfAbsent(implementation, impl -> newConcurrentMap())
+                .computeIfAbsent(new LambdaMetafactoryWrapper.TieredKey(parameters, promotionThreshold), key -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.wrapTieredUncached(implementation, parameters, promotionThreshold);
+                }).get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.FACTORY);
+        final Function<LambdaMetafactoryWrapper.Shape<?>, LambdaMetafactoryWrapper.CapturingFactory<?>> loader = shape_ -> {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.FACTORY);
+            return wrapper.prepareUncached(implementation, shape_);
+        };
+        final Class<?> declaringClass = implementation.getDeclaringClass();
+        if (!isReferencedByClassLoader(declaringClass)) {
+            return (LambdaMetafactoryWrapper.CapturingFactory<T>) ANON_AND_HIDDEN_FACTORIES
+                    .computeIfAbsent(implementation, impl -> newConcurrentMap())
+                    .computeIfAbsent(shape, loader);
+        }
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) getClassLoaderSpecificCache(declaringClass).factories
+                .computeIfAbsent(implementation, impl -> newConcurrentMap())
+                .computeIfAbsent(shape, loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.FACTORY);
+        return (LambdaMetafactoryWrapper.CapturingFactory<T>) METHOD_HANDLE_FACTORIES
+                .computeIfAbsent(implementation, impl -> newConcurrentMap())
+                .computeIfAbsent(shape, shape_ -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.FACTORY);
+                    return wrapper.prepareMethodHandleUncached(implementation, shape_);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapMethods(LambdaMetafactoryWrapper wrapper, Class<T> type, Map<Method, MethodHandle> implementations) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Map<Class<?>, Map<Map<Method, MethodHandle>, Object>> cache = isReferencedByClassLoader(type)
+                ? getClassLoaderSpecificCache(type).multiMethodWrappers
+                : ANON_AND_HIDDEN_MULTI_METHOD_WRAPPERS;
+        return (T) cache
+                .computeIfAbsent(type, type_ -> newConcurrentMap())
+                .computeIfAbsent(Map.copyOf(implementations), implementations_ -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.wrapMethodsUncached(type, implementations_);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(LambdaMetafactoryWrapper wrapper, Class<?> declaringClass, Class<? super T> functionalInterface) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Map<Class<?>, Map<Class<?>, LambdaMetafactoryWrapper.SharedDispatcher<?>>> cache
+                = isReferencedByClassLoader(declaringClass)
+                ? getClassLoaderSpecificCache(declaringClass).sharedDispatchers
+                : ANON_AND_HIDDEN_SHARED_DISPATCHERS;
+        return (LambdaMetafactoryWrapper.SharedDispatcher<T>) cache
+                .computeIfAbsent(declaringClass, clazz -> newConcurrentMap())
+                .computeIfAbsent(functionalInterface, iface -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.getSharedDispatcherUncached(declaringClass, functionalInterface);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapField(LambdaMetafactoryWrapper wrapper, Field field, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Class<?> declaringClass = field.getDeclaringClass();
+        final Map<Field, Map<LambdaMetafactoryWrapper.FieldAccessKey, Object>> cache
+                = isReferencedByClassLoader(declaringClass)
+                ? getClassLoaderSpecificCache(declaringClass).fieldWrappers
+                : ANON_AND_HIDDEN_FIELD_WRAPPERS;
+        return (T) cache
+                .computeIfAbsent(field, field_ -> newConcurrentMap())
+                .computeIfAbsent(new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters), key -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.wrapFieldUncached(field, accessMode, parameters);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T wrapVarHandle(LambdaMetafactoryWrapper wrapper, VarHandle varHandle, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        return (T) VAR_HANDLE_WRAPPERS
+                .computeIfAbsent(varHandle, handle -> newConcurrentMap())
+                .computeIfAbsent(new LambdaMetafactoryWrapper.FieldAccessKey(accessMode, parameters), key -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+                    return wrapper.wrapVarHandleUncached(varHandle, accessMode, parameters);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> PropertyAccessors<T> getPropertyAccessors(LambdaMetafactoryWrapper wrapper, Class<T> type) {
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+        final Map<Class<?>, PropertyAccessors<?>> cache = isReferencedByClassLoader(type)
+                ? getClassLoaderSpecificCache(type).propertyAccessors
+                : ANON_AND_HIDDEN_PROPERTY_ACCESSORS;
+        return (PropertyAccessors<T>) cache.computeIfAbsent(type, type_ -> {
+            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.WRAPPER);
+            return wrapper.getPropertyAccessorsUncached(type);
+        });
     }
 
     @Override
     public Object deserializeLambda(SerializedLambda serializedLambda) {
-        return DESERIALIZATION_CACHE.computeIfAbsent(serializedLambda, LambdaMetafactoryWrapper::deserializeLambdaUncached);
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.DESERIALIZED);
+        final LambdaMetafactoryWrapper.SerializedLambdaKey key
+                = LambdaMetafactoryWrapper.SerializedLambdaKey.of(serializedLambda);
+        return LambdaMetafactoryWrapper.createDeserialized(
+                getClassLoaderSpecificCache(classForSlashDelimitedName(key.implClass())).deserialized
+                        .computeIfAbsent(key, key_ -> {
+                            LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.DESERIALIZED);
+                            return LambdaMetafactoryWrapper.prepareDeserializedUncached(serializedLambda);
+                        }), serializedLambda);
     }
 
     @Override
@@ -131,13 +355,52 @@ public class LambdaMetafactoryDefaultCacheManager implements LambdaMetafactoryCa
         ANON_AND_HIDDEN_DESCRIPTORS.clear();
         ANON_AND_HIDDEN_UNREFLECTED.clear();
         ANON_AND_HIDDEN_WRAPPERS.clear();
+        ANON_AND_HIDDEN_TIERED_WRAPPERS.clear();
         METHOD_HANDLE_WRAPPERS.clear();
-        FIND_METHOD_CACHE.clear();
-        DESERIALIZATION_CACHE.clear();
+        ANON_AND_HIDDEN_FACTORIES.clear();
+        ANON_AND_HIDDEN_MULTI_METHOD_WRAPPERS.clear();
+        ANON_AND_HIDDEN_SHARED_DISPATCHERS.clear();
+        ANON_AND_HIDDEN_PROPERTY_ACCESSORS.clear();
+        ANON_AND_HIDDEN_FIELD_WRAPPERS.clear();
+        VAR_HANDLE_WRAPPERS.clear();
+        METHOD_HANDLE_FACTORIES.clear();
+        CLASSES_BY_SLASH_DELIMITED_NAME.clear();
     }
 
     @Override
     public Executable findMethod(LambdaMetafactoryWrapper wrapper, LambdaMetafactoryWrapper.SerializedLambdaMethodDescription methodDescription) {
-        return FIND_METHOD_CACHE.computeIfAbsent(methodDescription, LambdaMetafactoryWrapper::findMethodUncached);
+        LambdaMetafactoryMetrics.recordRequest(LambdaMetafactoryMetrics.CacheTier.METHOD);
+        final Class<?> implClass = classForSlashDelimitedName(methodDescription.slashDelimitedClassName());
+        return getClassLoaderSpecificCache(implClass).methods
+                .computeIfAbsent(implClass, clazz -> newConcurrentMap())
+                .computeIfAbsent(methodDescription.methodName() + methodDescription.methodSignature(), key -> {
+                    LambdaMetafactoryMetrics.recordMiss(LambdaMetafactoryMetrics.CacheTier.METHOD);
+                    return LambdaMetafactoryWrapper.findMethodUncached(methodDescription);
+                });
+    }
+
+    private static Class<?> classForSlashDelimitedName(final String slashDelimitedName) {
+        return CLASSES_BY_SLASH_DELIMITED_NAME.computeIfAbsent(slashDelimitedName,
+                LambdaMetafactoryWrapper::classForSlashDelimitedName);
+    }
+
+    @Override
+    public Map<String, Integer> getCachedEntriesPerClassLoader() {
+        final Map<String, Integer> result = new TreeMap<>();
+        result.put("bootstrap, platform, system and ancestors", CACHE_FOR_IMMORTAL_CLASSLOADERS.size());
+        CACHE_PER_UNLOADABLE_CLASSLOADER.forEach((loader, cache) -> result.put(String.valueOf(loader), cache.size()));
+        result.put("anonymous and hidden classes", ANON_AND_HIDDEN_DESCRIPTORS.size()
+                + ANON_AND_HIDDEN_UNREFLECTED.size()
+                + ANON_AND_HIDDEN_WRAPPERS.values().stream().mapToInt(Map::size).sum()
+                + ANON_AND_HIDDEN_TIERED_WRAPPERS.values().stream().mapToInt(Map::size).sum()
+                + ANON_AND_HIDDEN_FACTORIES.values().stream().mapToInt(Map::size).sum()
+                + ANON_AND_HIDDEN_MULTI_METHOD_WRAPPERS.values().stream().mapToInt(Map::size).sum()
+                + ANON_AND_HIDDEN_SHARED_DISPATCHERS.values().stream().mapToInt(Map::size).sum()
+                + ANON_AND_HIDDEN_PROPERTY_ACCESSORS.size()
+                + ANON_AND_HIDDEN_FIELD_WRAPPERS.values().stream().mapToInt(Map::size).sum());
+        result.put("method handles", METHOD_HANDLE_WRAPPERS.values().stream().mapToInt(Map::size).sum()
+                + VAR_HANDLE_WRAPPERS.values().stream().mapToInt(Map::size).sum()
+                + METHOD_HANDLE_FACTORIES.values().stream().mapToInt(Map::size).sum());
+        return result;
     }
 }
@@ -0,0 +1,179 @@
+package io.github.pr0methean.invoke;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class LambdaMetafactoryMetrics implements LambdaMetafactoryMetricsMXBean {
+    public static final String ENABLED_PROPERTY = "io.github.pr0methean.invoke.metrics";
+    public static final String OBJECT_NAME = "io.github.pr0methean.invoke:type=LambdaMetafactoryMetrics";
+    // Constant, so that the JIT removes every recording call when it's false
+    static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static final int HISTOGRAM_BUCKETS = 64;
+
+    public enum CacheTier {
+        DESCRIPTOR, UNREFLECTED, FACTORY, WRAPPER, DESERIALIZED, METHOD
+    }
+
+    private static final LongAdder[] REQUESTS = newAdders(CacheTier.values().length);
+    private static final LongAdder[] MISSES = newAdders(CacheTier.values().length);
+    private static final LongAdder[] EVICTIONS = newAdders(CacheTier.values().length);
+    private static final LongAdder[] SPIN_LATENCY_HISTOGRAM = newAdders(HISTOGRAM_BUCKETS);
+    private static final LongAdder SPIN_NANOS = new LongAdder();
+    // Every cache manager a wrapper has been built with, so that entries are counted whichever one is in use
+    private static final ConcurrentWeakKeyMap<LambdaMetafactoryCacheManager, Boolean> CACHE_MANAGERS
+            = new ConcurrentWeakKeyMap<>();
+    private static final LambdaMetafactoryMetrics INSTANCE = new LambdaMetafactoryMetrics();
+
+    static {
+        if (ENABLED) {
+            registerMXBean();
+        }
+    }
+
+    private LambdaMetafactoryMetrics() {}
+
+    public static LambdaMetafactoryMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public static void registerMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (final InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (final JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static LongAdder[] newAdders(final int count) {
+        final LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    static void recordRequest(final CacheTier tier) {
+        if (ENABLED && tier != null) {
+            REQUESTS[tier.ordinal()].increment();
+        }
+    }
+
+    static void recordMiss(final CacheTier tier) {
+        if (ENABLED && tier != null) {
+            MISSES[tier.ordinal()].increment();
+        }
+    }
+
+    static void recordEvictions(final CacheTier tier, final int count) {
+        if (ENABLED && tier != null) {
+            EVICTIONS[tier.ordinal()].add(count);
+        }
+    }
+
+    static void registerCacheManager(final LambdaMetafactoryCacheManager cacheManager) {
+        if (ENABLED && !CACHE_MANAGERS.containsKey(cacheManager)) {
+            CACHE_MANAGERS.putIfAbsent(cacheManager, Boolean.TRUE);
+        }
+    }
+
+    static long spinStartTime() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static void recordSpin(final long startTime) {
+        if (ENABLED) {
+            final long nanos = Math.max(1, System.nanoTime() - startTime);
+            SPIN_NANOS.add(nanos);
+            SPIN_LATENCY_HISTOGRAM[63 - Long.numberOfLeadingZeros(nanos)].increment();
+        }
+    }
+
+    private static Map<String, Long> perTier(final LongAdder[] adders) {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (final CacheTier tier : CacheTier.values()) {
+            result.put(tier.name(), adders[tier.ordinal()].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public Map<String, Long> getRequestCounts() {
+        return perTier(REQUESTS);
+    }
+
+    @Override
+    public Map<String, Long> getHitCounts() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (final CacheTier tier : CacheTier.values()) {
+            result.put(tier.name(), Math.max(0, REQUESTS[tier.ordinal()].sum() - MISSES[tier.ordinal()].sum()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getMissCounts() {
+        return perTier(MISSES);
+    }
+
+    @Override
+    public Map<String, Long> getEvictionCounts() {
+        return perTier(EVICTIONS);
+    }
+
+    @Override
+    public long getSpinCount() {
+        long count = 0;
+        for (final LongAdder bucket : SPIN_LATENCY_HISTOGRAM) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotalSpinNanos() {
+        return SPIN_NANOS.sum();
+    }
+
+    @Override
+    public long[] getSpinLatencyHistogram() {
+        final long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = SPIN_LATENCY_HISTOGRAM[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public Map<String, Integer> getCachedEntriesPerClassLoader() {
+        final Map<String, Integer> result = new TreeMap<>();
+        for (final LambdaMetafactoryCacheManager cacheManager : CACHE_MANAGERS.keySet()) {
+            final String prefix = cacheManager.getClass().getSimpleName() + ": ";
+            cacheManager.getCachedEntriesPerClassLoader().forEach((loader, count) ->
+                    result.merge(prefix + loader, count, Integer::sum));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (final LongAdder[] adders : new LongAdder[][]{REQUESTS, MISSES, EVICTIONS, SPIN_LATENCY_HISTOGRAM}) {
+            for (final LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+        SPIN_NANOS.reset();
+    }
+}
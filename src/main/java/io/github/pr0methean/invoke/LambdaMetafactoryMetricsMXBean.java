@@ -0,0 +1,26 @@
+package io.github.pr0methean.invoke;
+
+import java.util.Map;
+
+public interface LambdaMetafactoryMetricsMXBean {
+    boolean isEnabled();
+
+    Map<String, Long> getRequestCounts();
+
+    Map<String, Long> getHitCounts();
+
+    Map<String, Long> getMissCounts();
+
+    Map<String, Long> getEvictionCounts();
+
+    long getSpinCount();
+
+    long getTotalSpinNanos();
+
+    // Element i counts spins that took at least 2^i and less than 2^(i+1) nanoseconds
+    long[] getSpinLatencyHistogram();
+
+    Map<String, Integer> getCachedEntriesPerClassLoader();
+
+    void reset();
+}
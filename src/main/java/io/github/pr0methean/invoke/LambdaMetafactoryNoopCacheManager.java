@@ -2,7 +2,11 @@ package io.github.pr0methean.invoke;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
 
 public class LambdaMetafactoryNoopCacheManager implements LambdaMetafactoryCacheManager {
     private static final LambdaMetafactoryNoopCacheManager INSTANCE = new LambdaMetafactoryNoopCacheManager();
@@ -30,6 +34,46 @@ public class LambdaMetafactoryNoopCacheManager implements LambdaMetafactoryCache
         return wrapper.wrapUncached(implementation, parameters);
     }
 
+    @Override
+    public <T> T wrapTiered(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters, int promotionThreshold) {
+        return wrapper.wrapTieredUncached(implementation, parameters, promotionThreshold).get();
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return wrapper.prepareUncached(implementation, shape);
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return wrapper.prepareMethodHandleUncached(implementation, shape);
+    }
+
+    @Override
+    public <T> T wrapMethods(LambdaMetafactoryWrapper wrapper, Class<T> type, Map<Method, MethodHandle> implementations) {
+        return wrapper.wrapMethodsUncached(type, implementations);
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(LambdaMetafactoryWrapper wrapper, Class<?> declaringClass, Class<? super T> functionalInterface) {
+        return wrapper.getSharedDispatcherUncached(declaringClass, functionalInterface);
+    }
+
+    @Override
+    public <T> T wrapField(LambdaMetafactoryWrapper wrapper, Field field, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return wrapper.wrapFieldUncached(field, accessMode, parameters);
+    }
+
+    @Override
+    public <T> T wrapVarHandle(LambdaMetafactoryWrapper wrapper, VarHandle varHandle, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return wrapper.wrapVarHandleUncached(varHandle, accessMode, parameters);
+    }
+
+    @Override
+    public <T> PropertyAccessors<T> getPropertyAccessors(LambdaMetafactoryWrapper wrapper, Class<T> type) {
+        return wrapper.getPropertyAccessorsUncached(type);
+    }
+
     @Override
     public Object deserializeLambda(SerializedLambda serializedLambda) {
         return LambdaMetafactoryWrapper.deserializeLambdaUncached(serializedLambda);
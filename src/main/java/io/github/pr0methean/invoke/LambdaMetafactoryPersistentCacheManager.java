@@ -0,0 +1,372 @@
+package io.github.pr0methean.invoke;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps a warm-up list: which implementations were prepared, and with which {@link LambdaMetafactoryWrapper.Shape}s,
+ * saved to a file so that a later run can spin them all through {@link #warmUp}, before anything asks for them. Wraps
+ * are only recorded when the delegate misses, so a delegate shared with other managers, like the default one, may
+ * serve lambdas that were spun elsewhere and never get recorded here. Each entry carries checksums of the
+ * implementation's and interface's class files; entries whose classes have changed or can't be found are dropped. A
+ * missing, empty or corrupt file just means there's nothing to warm up.
+ * <p>
+ * Only keys are saved, not class bytes, so this moves spinning off the path of the first call without making startup
+ * itself any faster: warmUp still runs {@link java.lang.invoke.LambdaMetafactory} once per entry. LambdaMetafactory
+ * doesn't expose the bytes it spins, and the classes this library spins itself take their handles as class data, which
+ * can't be saved. To skip spinning at startup, use a CDS archive instead.
+ */
+public class LambdaMetafactoryPersistentCacheManager implements LambdaMetafactoryCacheManager {
+    private static final Logger LOG = Logger.getLogger(LambdaMetafactoryPersistentCacheManager.class.getSimpleName());
+    private static final int MAGIC = 0x4c4d4650; // "LMFP"
+    private static final int VERSION = 1;
+
+    // -1 if the class file can't be read
+    private static final ClassValue<Long> CLASS_FILE_CHECKSUMS = new ClassValue<>() {
+        @Override
+        protected Long computeValue(final Class<?> type) {
+            if (type.isHidden() || type.isArray() || type.isPrimitive()) {
+                return -1L;
+            }
+            final String name = type.getName();
+            try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+                if (in == null) {
+                    return -1L;
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(in.readAllBytes());
+                return crc.getValue();
+            } catch (final IOException e) {
+                return -1L;
+            }
+        }
+    };
+
+    record Entry(
+            String declaringClass,
+            String methodName,
+            String methodDescriptor,
+            String functionalInterface,
+            boolean serializable,
+            List<String> bridgeOverloadTypes,
+            String capturedTypes,
+            List<String> markerInterfaces,
+            long declaringClassChecksum,
+            long functionalInterfaceChecksum
+    ) {}
+
+    private final Path file;
+    private final LambdaMetafactoryCacheManager delegate;
+    private final List<Entry> loaded;
+    private final Set<Entry> recorded = ConcurrentHashMap.newKeySet();
+    // So that repeated prepare calls don't rebuild entries
+    private final Map<Executable, Set<LambdaMetafactoryWrapper.Shape<?>>> seen = new ConcurrentWeakKeyMap<>();
+
+    protected LambdaMetafactoryPersistentCacheManager(final Path file, final LambdaMetafactoryCacheManager delegate) {
+        this.file = requireNonNull(file);
+        this.delegate = requireNonNull(delegate);
+        this.loaded = List.copyOf(readEntries(file));
+    }
+
+    public static LambdaMetafactoryPersistentCacheManager open(final Path file) {
+        return open(file, LambdaMetafactoryDefaultCacheManager.getInstance());
+    }
+
+    public static LambdaMetafactoryPersistentCacheManager open(final Path file,
+                                                               final LambdaMetafactoryCacheManager delegate) {
+        return new LambdaMetafactoryPersistentCacheManager(file, delegate);
+    }
+
+    public int getLoadedEntryCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Prepares every loaded entry whose classes are unchanged, through the given wrapper, and returns how many were
+     * prepared. The wrapper's lookup must be able to access the implementations.
+     */
+    public int warmUp(final LambdaMetafactoryWrapper wrapper) {
+        final ClassLoader loader = wrapper.lookup.lookupClass().getClassLoader();
+        int prepared = 0;
+        for (final Entry entry : loaded) {
+            try {
+                final Class<?> declaringClass = Class.forName(entry.declaringClass, false, loader);
+                final Class<?> functionalInterface = Class.forName(entry.functionalInterface, false, loader);
+                if (CLASS_FILE_CHECKSUMS.get(declaringClass) != entry.declaringClassChecksum
+                        || CLASS_FILE_CHECKSUMS.get(functionalInterface) != entry.functionalInterfaceChecksum) {
+                    LOG.fine(() -> "Skipping " + entry + " because its classes have changed");
+                    continue;
+                }
+                final Executable implementation = resolve(declaringClass, entry.methodName,
+                        MethodType.fromMethodDescriptorString(entry.methodDescriptor, loader));
+                @SuppressWarnings("unchecked")
+                final LambdaMetafactoryWrapper.Shape.Builder<Object> shape
+                        = LambdaMetafactoryWrapper.Shape.builder((Class<Object>) functionalInterface)
+                        .serializable(entry.serializable)
+                        .addCapturedTypes(MethodType.fromMethodDescriptorString(entry.capturedTypes, loader)
+                                .parameterList());
+                for (final String bridgeOverloadType : entry.bridgeOverloadTypes) {
+                    shape.addBridgeOverload(MethodType.fromMethodDescriptorString(bridgeOverloadType, loader));
+                }
+                for (final String markerInterface : entry.markerInterfaces) {
+                    shape.addMarkerInterface(Class.forName(markerInterface, false, loader));
+                }
+                wrapper.prepare(implementation, shape.build());
+                recorded.add(entry);
+                prepared++;
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                LOG.log(Level.FINE, e, () -> "Skipping " + entry);
+            }
+        }
+        return prepared;
+    }
+
+    private static Executable resolve(final Class<?> declaringClass, final String methodName, final MethodType type)
+            throws NoSuchMethodException {
+        if ("<init>".equals(methodName)) {
+            return declaringClass.getDeclaredConstructor(type.parameterArray());
+        }
+        return declaringClass.getDeclaredMethod(methodName, type.parameterArray());
+    }
+
+    /**
+     * Writes everything prepared through this instance so far, replacing the file.
+     */
+    public void save() throws IOException {
+        writeEntries(file, recorded);
+    }
+
+    private void record(final Executable implementation, final LambdaMetafactoryWrapper.Shape<?> shape) {
+        if (!seen.computeIfAbsent(implementation, impl -> ConcurrentHashMap.newKeySet()).add(shape)) {
+            return;
+        }
+        final Class<?> declaringClass = implementation.getDeclaringClass();
+        final long declaringClassChecksum = CLASS_FILE_CHECKSUMS.get(declaringClass);
+        final long functionalInterfaceChecksum = CLASS_FILE_CHECKSUMS.get(shape.functionalInterface());
+        if (declaringClassChecksum < 0 || functionalInterfaceChecksum < 0) {
+            return;
+        }
+        final MethodType type = implementation instanceof Constructor
+                ? MethodType.methodType(void.class, implementation.getParameterTypes())
+                : MethodType.methodType(((Method) implementation).getReturnType(),
+                        implementation.getParameterTypes());
+        recorded.add(new Entry(declaringClass.getName(),
+                implementation instanceof Constructor ? "<init>" : implementation.getName(),
+                type.toMethodDescriptorString(), shape.functionalInterface().getName(), shape.serializable(),
+                shape.bridgeOverloadTypes().stream().map(MethodType::toMethodDescriptorString).toList(),
+                MethodType.methodType(void.class, shape.capturedTypes()).toMethodDescriptorString(),
+                shape.markerInterfaces().stream().map(Class::getName).toList(),
+                declaringClassChecksum, functionalInterfaceChecksum));
+    }
+
+    static List<Entry> readEntries(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return List.of();
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                LOG.warning(() -> file + " isn't a lambda cache file; ignoring it");
+                return List.of();
+            }
+            final int count = readLength(buffer);
+            final List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(readString(buffer), readString(buffer), readString(buffer), readString(buffer),
+                        buffer.get() != 0, readStrings(buffer), readString(buffer), readStrings(buffer),
+                        buffer.getLong(), buffer.getLong()));
+            }
+            return entries;
+        } catch (final NoSuchFileException e) {
+            return List.of();
+        } catch (final IOException | BufferUnderflowException | IllegalArgumentException e) {
+            LOG.log(Level.WARNING, e, () -> "Can't read lambda cache file " + file + "; ignoring it");
+            return List.of();
+        }
+    }
+
+    static void writeEntries(final Path file, final Collection<Entry> entries) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            for (final Entry entry : entries) {
+                writeString(out, entry.declaringClass);
+                writeString(out, entry.methodName);
+                writeString(out, entry.methodDescriptor);
+                writeString(out, entry.functionalInterface);
+                out.writeBoolean(entry.serializable);
+                writeStrings(out, entry.bridgeOverloadTypes);
+                writeString(out, entry.capturedTypes);
+                writeStrings(out, entry.markerInterfaces);
+                out.writeLong(entry.declaringClassChecksum);
+                out.writeLong(entry.functionalInterfaceChecksum);
+            }
+        }
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        final byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    // Every element takes at least a byte, so a length beyond what's left can only come from a corrupt file
+    private static int readLength(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length + " at offset " + (buffer.position() - 4));
+        }
+        return length;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] utf8 = new byte[readLength(buffer)];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(final ByteBuffer buffer) {
+        final String[] strings = new String[readLength(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        return Arrays.asList(strings);
+    }
+
+    @Override
+    public <T> T wrapMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return delegate.wrapMethodHandle(wrapper, implementation, parameters);
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor getDescriptor(LambdaMetafactoryWrapper wrapper, Class<? super T> functionalInterface) {
+        return delegate.getDescriptor(wrapper, functionalInterface);
+    }
+
+    @Override
+    public MethodHandle getUnreflectedImplementation(LambdaMetafactoryWrapper wrapper, Executable implementation) {
+        return delegate.getUnreflectedImplementation(wrapper, implementation);
+    }
+
+    @Override
+    public <T> T wrap(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return delegate.wrap(wrapper, implementation, parameters);
+    }
+
+    @Override
+    public <T> T wrapTiered(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters, int promotionThreshold) {
+        return delegate.wrapTiered(wrapper, implementation, parameters, promotionThreshold);
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepare(LambdaMetafactoryWrapper wrapper, Executable implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        final LambdaMetafactoryWrapper.CapturingFactory<T> factory = delegate.prepare(wrapper, implementation, shape);
+        // A wrap only gets here when it misses and is about to spin, so profiled and precompiled lambdas never do
+        record(implementation, shape);
+        return factory;
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.CapturingFactory<T> prepareMethodHandle(LambdaMetafactoryWrapper wrapper, MethodHandle implementation, LambdaMetafactoryWrapper.Shape<T> shape) {
+        return delegate.prepareMethodHandle(wrapper, implementation, shape);
+    }
+
+    @Override
+    public <T> T wrapMethods(LambdaMetafactoryWrapper wrapper, Class<T> type, Map<Method, MethodHandle> implementations) {
+        return delegate.wrapMethods(wrapper, type, implementations);
+    }
+
+    @Override
+    public <T> LambdaMetafactoryWrapper.SharedDispatcher<T> getSharedDispatcher(LambdaMetafactoryWrapper wrapper, Class<?> declaringClass, Class<? super T> functionalInterface) {
+        return delegate.getSharedDispatcher(wrapper, declaringClass, functionalInterface);
+    }
+
+    @Override
+    public <T> T wrapField(LambdaMetafactoryWrapper wrapper, Field field, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return delegate.wrapField(wrapper, field, accessMode, parameters);
+    }
+
+    @Override
+    public <T> T wrapVarHandle(LambdaMetafactoryWrapper wrapper, VarHandle varHandle, VarHandle.AccessMode accessMode, LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        return delegate.wrapVarHandle(wrapper, varHandle, accessMode, parameters);
+    }
+
+    @Override
+    public <T> PropertyAccessors<T> getPropertyAccessors(LambdaMetafactoryWrapper wrapper, Class<T> type) {
+        return delegate.getPropertyAccessors(wrapper, type);
+    }
+
+    @Override
+    public Object deserializeLambda(SerializedLambda serializedLambda) {
+        return delegate.deserializeLambda(serializedLambda);
+    }
+
+    @Override
+    public void clearCaches() {
+        delegate.clearCaches();
+    }
+
+    @Override
+    public Executable findMethod(LambdaMetafactoryWrapper wrapper, LambdaMetafactoryWrapper.SerializedLambdaMethodDescription methodDescription) {
+        return delegate.findMethod(wrapper, methodDescription);
+    }
+
+    @Override
+    public Map<String, Integer> getCachedEntriesPerClassLoader() {
+        return delegate.getCachedEntriesPerClassLoader();
+    }
+}
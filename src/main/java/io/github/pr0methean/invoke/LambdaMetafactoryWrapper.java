@@ -4,19 +4,35 @@ import java.io.Serializable;
 import java.lang.invoke.CallSite;
 import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
 import java.lang.invoke.SerializedLambda;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.lang.invoke.LambdaMetafactory.FLAG_BRIDGES;
 import static java.lang.invoke.LambdaMetafactory.FLAG_MARKERS;
@@ -28,13 +44,22 @@ public class LambdaMetafactoryWrapper {
     private static final Logger LOG = Logger.getLogger(LambdaMetafactoryWrapper.class.getSimpleName());
     private static final Class<?>[] EMPTY_CLASS_ARRAY = new Class<?>[0];
 
+    // Coalesces concurrent wrapAsync calls for the same wrapper, implementation and parameters
+    private static final ConcurrentHashMap<InFlightKey, CompletableFuture<Object>> IN_FLIGHT
+            = new ConcurrentHashMap<>();
+
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 10_000;
+
     private final MethodHandles.Lookup serialLookup;
     private final LambdaMetafactoryCacheManager cacheManager;
+    // Whether this wrapper's lookup can crack each handle, since revealDirect is too slow to repeat on every wrap
+    private final ConcurrentWeakKeyMap<MethodHandle, Boolean> directHandles = new ConcurrentWeakKeyMap<>();
 
     public LambdaMetafactoryWrapper(final MethodHandles.Lookup lookup,
                                     LambdaMetafactoryCacheManager cacheManager) {
         this.cacheManager = cacheManager;
         this.lookup = lookup;
+        LambdaMetafactoryMetrics.registerCacheManager(cacheManager);
         try {
             this.serialLookup = MethodHandles.privateLookupIn(LambdaMetafactoryWrapper.class, lookup);
         } catch (final IllegalAccessException e) {
@@ -61,6 +86,7 @@ public class LambdaMetafactoryWrapper {
         return cacheManager.wrap(this, implementation, parameters);
     }
 
+    @SuppressWarnings("unchecked")
     protected <T> T wrapUncached(final Executable implementation, final Parameters<T> parameters) {
         if (implementation instanceof Method && !parameters.capturedParameters.isEmpty()
                 && !Modifier.isStatic(implementation.getModifiers())) {
@@ -70,57 +96,487 @@ public class LambdaMetafactoryWrapper {
                         + "receiver and must implement that method");
             }
         }
-        final MethodHandle unreflectedImplementation = getUnreflectedImplementation(implementation);
-        return wrapMethodHandleUncached(unreflectedImplementation, parameters);
+        if (parameters.profiled) {
+            return (T) spinForwarder(parameters, LambdaProfiler.instrument(implementation,
+                    bindImplementation(implementation, parameters.capturedParameters)));
+        }
+        final T precompiled = PrecompiledLambdaFactories.wrap(implementation, parameters);
+        if (precompiled != null) {
+            return precompiled;
+        }
+        final MethodType implType = getUnreflectedImplementation(implementation).type();
+        final List<Object> capturedParameters = packVarargs(implType, parameters.capturedParameters);
+        return prepare(implementation, parameters.shape(implType, capturedParameters.size()))
+                .create(capturedParameters);
     }
 
+    /**
+     * Non-direct and profiled handles aren't cached: their spun class holds the handle, so an entry keyed by it, even
+     * weakly, would never be collected. Callers that wrap one repeatedly should keep the result themselves.
+     */
     public <T> T wrapMethodHandle(final MethodHandle implementation, final Parameters<T> parameters) {
+        if (parameters.profiled || !isDirect(implementation)) {
+            return wrapMethodHandleUncached(implementation, parameters);
+        }
         return cacheManager.wrapMethodHandle(this, implementation, parameters);
     }
 
+    public <T> T wrapTiered(final Executable implementation, final Parameters<T> parameters) {
+        return wrapTiered(implementation, parameters, DEFAULT_PROMOTION_THRESHOLD);
+    }
+
+    /**
+     * Returns a cheap {@link MethodHandle}-backed implementation until it has been called {@code promotionThreshold}
+     * times, then spins a lambda class in the background. Once that's done, later calls with the same arguments return
+     * the spun lambda. Serializable, profiled and marker-interface lambdas, and those with bridges, are always spun
+     * eagerly.
+     */
+    public <T> T wrapTiered(final Executable implementation, final Parameters<T> parameters,
+                            final int promotionThreshold) {
+        if (promotionThreshold < 0) {
+            throw new IllegalArgumentException("promotionThreshold must not be negative");
+        }
+        if (promotionThreshold == 0 || parameters.serializable() || parameters.profiled()
+                || !parameters.markerInterfaces().isEmpty() || !parameters.bridgeOverloadTypes().isEmpty()) {
+            return wrap(implementation, parameters);
+        }
+        return cacheManager.wrapTiered(this, implementation, parameters, promotionThreshold);
+    }
+
+    /**
+     * Returns the cold tier for {@link #wrapTiered}, whose {@link Supplier#get} returns the lambda to hand out: the
+     * {@link MethodHandle}-backed one until promotion, then the spun one.
+     */
+    protected <T> Supplier<T> wrapTieredUncached(final Executable implementation, final Parameters<T> parameters,
+                                                 final int promotionThreshold) {
+        final MethodHandle unreflected = getUnreflectedImplementation(implementation);
+        return new TieredLambda<>(this, implementation, parameters, unreflected,
+                packVarargs(unreflected.type(), parameters.capturedParameters),
+                getDescriptor(parameters.functionalInterface), promotionThreshold);
+    }
+
+    /**
+     * Implements an interface with any number of abstract methods, or extends an abstract class that has a
+     * non-private no-arg constructor, by spinning a hidden class that calls the given handles. Every abstract method
+     * must have a handle, which receives the method's arguments but not the receiver; concrete methods may be
+     * overridden too.
+     */
+    public <T> T wrapMethods(final Class<T> type, final Map<Method, MethodHandle> implementations) {
+        return cacheManager.wrapMethods(this, requireNonNull(type), implementations);
+    }
+
+    protected <T> T wrapMethodsUncached(final Class<T> type, final Map<Method, MethodHandle> implementations) {
+        return type.cast(HiddenClassSpinner.spin(definingLookup(), type, implementations));
+    }
+
+    /**
+     * Wraps a non-capturing method or constructor as an instance of a class that's shared with every other method and
+     * constructor of the same declaring class that fits {@code functionalInterface}. This spins one hidden class per
+     * declaring class and interface rather than one per method, while each instance still has a single target.
+     */
+    public <T> T wrapShared(final Executable implementation, final Class<? super T> functionalInterface) {
+        return this.<T>getSharedDispatcher(implementation.getDeclaringClass(), functionalInterface)
+                .get(implementation);
+    }
+
+    // Results are in the same order as the implementations, which may have different declaring classes
+    public <T> List<T> wrapShared(final Collection<? extends Executable> implementations,
+                                  final Class<? super T> functionalInterface) {
+        final Map<Class<?>, SharedDispatcher<T>> dispatchers = new HashMap<>();
+        final List<T> wrapped = new ArrayList<>(implementations.size());
+        for (final Executable implementation : implementations) {
+            wrapped.add(dispatchers.computeIfAbsent(implementation.getDeclaringClass(),
+                    declaringClass -> getSharedDispatcher(declaringClass, functionalInterface)).get(implementation));
+        }
+        return wrapped;
+    }
+
+    public <T> SharedDispatcher<T> getSharedDispatcher(final Class<?> declaringClass,
+                                                       final Class<? super T> functionalInterface) {
+        return cacheManager.getSharedDispatcher(this, requireNonNull(declaringClass),
+                requireNonNull(functionalInterface));
+    }
+
+    protected <T> SharedDispatcher<T> getSharedDispatcherUncached(final Class<?> declaringClass,
+                                                                  final Class<? super T> functionalInterface) {
+        final FunctionalInterfaceDescriptor descriptor = getDescriptor(functionalInterface);
+        final List<Executable> targets = new ArrayList<>();
+        final List<MethodHandle> handles = new ArrayList<>();
+        final List<Executable> candidates = new ArrayList<>(Arrays.asList(declaringClass.getDeclaredMethods()));
+        candidates.addAll(Arrays.asList(declaringClass.getDeclaredConstructors()));
+        for (final Executable candidate : candidates) {
+            final MethodHandle handle = adaptForDispatch(candidate, descriptor.methodType());
+            if (handle != null) {
+                targets.add(candidate);
+                handles.add(handle);
+            }
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No method or constructor of " + declaringClass + " fits "
+                    + functionalInterface);
+        }
+        return new SharedDispatcher<>(targets, HiddenClassSpinner.spinDispatcher(definingLookup(), declaringClass,
+                functionalInterface, descriptor.methodName(), descriptor.methodType(), handles));
+    }
+
+    // Null if the executable can't implement the method type without capturing anything
+    private MethodHandle adaptForDispatch(final Executable executable, final MethodType methodType) {
+        if (executable instanceof Method && ((Method) executable).isBridge()) {
+            return null;
+        }
+        // Checked before unreflecting, so that members that can't fit are never made accessible
+        final boolean hasReceiver = executable instanceof Method && !Modifier.isStatic(executable.getModifiers());
+        if (executable.getParameterCount() + (hasReceiver ? 1 : 0) != methodType.parameterCount()) {
+            return null;
+        }
+        final MethodHandle unreflected;
+        try {
+            unreflected = getUnreflectedImplementation(executable);
+        } catch (final RuntimeException e) {
+            if (!(e instanceof InaccessibleObjectException || e instanceof SecurityException
+                    || e.getCause() instanceof IllegalAccessException)) {
+                throw e;
+            }
+            LOG.log(Level.FINE, e, () -> "Not dispatching to " + executable + ", which " + lookup + " can't access");
+            return null;
+        }
+        try {
+            return unreflected.asFixedArity().asType(methodType);
+        } catch (final WrongMethodTypeException e) {
+            return null;
+        }
+    }
+
+    public <T> T wrapGetter(final Field field, final Parameters<T> parameters) {
+        return wrapField(field, VarHandle.AccessMode.GET, parameters);
+    }
+
+    public <T> T wrapSetter(final Field field, final Parameters<T> parameters) {
+        return wrapField(field, VarHandle.AccessMode.SET, parameters);
+    }
+
+    /**
+     * Wraps an access to a field, which LambdaMetafactory can't do, as a spun class that calls the accessor handle.
+     * For an instance field, the receiver is either the first captured parameter or the first parameter of the
+     * interface method. Captured parameters are bound into the handle, so each distinct capture spins its own class.
+     */
+    public <T> T wrapField(final Field field, final VarHandle.AccessMode accessMode, final Parameters<T> parameters) {
+        return cacheManager.wrapField(this, requireNonNull(field), requireNonNull(accessMode), parameters);
+    }
+
+    protected <T> T wrapFieldUncached(final Field field, final VarHandle.AccessMode accessMode,
+                                      final Parameters<T> parameters) {
+        if (!Modifier.isStatic(field.getModifiers()) && !parameters.capturedParameters.isEmpty()
+                && !field.getDeclaringClass().isInstance(parameters.capturedParameters.getFirst())) {
+            throw new IllegalArgumentException("First captured parameter for an instance field must be the "
+                    + "receiver");
+        }
+        final MethodHandle accessor;
+        try {
+            if (accessMode == VarHandle.AccessMode.GET) {
+                field.setAccessible(true);
+                accessor = lookup.unreflectGetter(field);
+            } else if (accessMode == VarHandle.AccessMode.SET) {
+                if (Modifier.isFinal(field.getModifiers())) {
+                    throw new IllegalArgumentException("Can't set final field " + field);
+                }
+                field.setAccessible(true);
+                accessor = lookup.unreflectSetter(field);
+            } else {
+                return wrapVarHandleUncached(lookup.unreflectVarHandle(field), accessMode, parameters);
+            }
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return wrapAccessor(accessor, parameters);
+    }
+
+    public <T> T wrapVarHandle(final VarHandle varHandle, final VarHandle.AccessMode accessMode,
+                               final Parameters<T> parameters) {
+        return cacheManager.wrapVarHandle(this, requireNonNull(varHandle), requireNonNull(accessMode), parameters);
+    }
+
+    protected <T> T wrapVarHandleUncached(final VarHandle varHandle, final VarHandle.AccessMode accessMode,
+                                          final Parameters<T> parameters) {
+        if (!varHandle.isAccessModeSupported(accessMode)) {
+            throw new IllegalArgumentException(varHandle + " doesn't support " + accessMode);
+        }
+        return wrapAccessor(varHandle.toMethodHandle(accessMode), parameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T wrapAccessor(final MethodHandle accessor, final Parameters<T> parameters) {
+        return (T) spinForwarder(parameters, bindCaptured(accessor, parameters.capturedParameters));
+    }
+
+    private static MethodHandle bindCaptured(final MethodHandle target, final List<Object> capturedParameters) {
+        if (capturedParameters.size() > target.type().parameterCount()) {
+            throw new IllegalArgumentException("Too many captured parameters for " + target.type());
+        }
+        return MethodHandles.insertArguments(target, 0, capturedParameters.toArray());
+    }
+
+    // Spins a class whose only method calls the target, for handles that LambdaMetafactory can't take
+    private Object spinForwarder(final Parameters<?> parameters, final MethodHandle target) {
+        if (parameters.serializable || !parameters.markerInterfaces.isEmpty()
+                || !parameters.bridgeOverloadTypes.isEmpty()) {
+            throw new IllegalArgumentException("Only LambdaMetafactory lambdas can be serializable or have marker "
+                    + "interfaces or bridges");
+        }
+        final List<Method> abstractMethods = HiddenClassSpinner.abstractMethods(parameters.functionalInterface);
+        if (!parameters.functionalInterface.isInterface() || abstractMethods.size() != 1) {
+            throw new IllegalArgumentException(parameters.functionalInterface + " isn't a functional interface");
+        }
+        return HiddenClassSpinner.spin(definingLookup(), parameters.functionalInterface,
+                Map.of(abstractMethods.getFirst(), target));
+    }
+
+    /**
+     * Returns a wrapper around a stable instance of the functional interface, whose implementation can be swapped
+     * later without handing out a new instance. The instance calls a {@link MutableCallSite}, which the JIT treats as
+     * a constant until its target changes, so calls cost the same as a direct lambda between swaps.
+     */
+    public <T> SwappableLambda<T> wrapSwappable(final Executable implementation, final Parameters<T> parameters) {
+        return newSwappable(bindImplementation(implementation, parameters.capturedParameters), parameters);
+    }
+
+    public <T> SwappableLambda<T> wrapSwappable(final MethodHandle implementation, final Parameters<T> parameters) {
+        return newSwappable(bindCaptured(implementation, parameters.capturedParameters), parameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> SwappableLambda<T> newSwappable(final MethodHandle initialTarget, final Parameters<T> parameters) {
+        final MethodType methodType = getDescriptor(parameters.functionalInterface).methodType();
+        final MutableCallSite callSite = new MutableCallSite(SwappableLambda.adapt(initialTarget, methodType));
+        return new SwappableLambda<>(this, callSite, (T) spinForwarder(parameters, callSite.dynamicInvoker()));
+    }
+
+    /**
+     * Starts a pipeline of stages that each take the previous stage's result, which will be wrapped as a single class.
+     */
+    public PipelineBuilder pipeline(final Class<?> inputType) {
+        return new PipelineBuilder(this, inputType);
+    }
+
+    // Not cached, since every pipeline is a new handle tree
+    @SuppressWarnings("unchecked")
+    <T> T wrapComposed(final MethodHandle composed, final Parameters<T> parameters) {
+        return (T) spinForwarder(parameters, composed);
+    }
+
+    MethodHandle bindImplementation(final Executable implementation, final List<Object> capturedParameters) {
+        final MethodHandle unreflected = getUnreflectedImplementation(implementation);
+        return bindCaptured(unreflected.asFixedArity(), packVarargs(unreflected.type(), capturedParameters));
+    }
+
+    /**
+     * Returns getters, setters and a constructor for every property of a record or bean, built in one call.
+     */
+    public <T> PropertyAccessors<T> getPropertyAccessors(final Class<T> type) {
+        return cacheManager.getPropertyAccessors(this, requireNonNull(type));
+    }
+
+    protected <T> PropertyAccessors<T> getPropertyAccessorsUncached(final Class<T> type) {
+        return PropertyAccessors.build(this, type);
+    }
+
+    // Hidden classes need a lookup with full privilege access
+    MethodHandles.Lookup definingLookup() {
+        return lookup.hasFullPrivilegeAccess() ? lookup : serialLookup;
+    }
+
+    public <T> Specialized<T> wrapSpecialized(final Executable implementation) {
+        return wrapSpecialized(implementation, false);
+    }
+
+    /**
+     * Wraps a method as whichever {@code java.util.function} interface avoids the most boxing. If some boxing would
+     * remain and {@code allowGenerated} is true, wraps it as a generated public interface instead, whose only method
+     * is {@code apply} and takes the implementation's primitive types as-is.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Specialized<T> wrapSpecialized(final Executable implementation, final boolean allowGenerated) {
+        final SpecializedInterfaces.Selection selection = selectSpecialized(
+                getUnreflectedImplementation(implementation).type(), allowGenerated);
+        final Class<? super T> functionalInterface = (Class<? super T>) selection.functionalInterface();
+        return new Specialized<>(functionalInterface, selection.boxingConversions(),
+                wrap(implementation, Parameters.<T>builder(functionalInterface).build()));
+    }
+
+    public <T> Specialized<T> wrapSpecialized(final MethodHandle implementation) {
+        return wrapSpecialized(implementation, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Specialized<T> wrapSpecialized(final MethodHandle implementation, final boolean allowGenerated) {
+        final SpecializedInterfaces.Selection selection = selectSpecialized(implementation.type(), allowGenerated);
+        final Class<? super T> functionalInterface = (Class<? super T>) selection.functionalInterface();
+        return new Specialized<>(functionalInterface, selection.boxingConversions(),
+                wrapMethodHandle(implementation, Parameters.<T>builder(functionalInterface).build()));
+    }
+
+    private static SpecializedInterfaces.Selection selectSpecialized(final MethodType implType,
+                                                                     final boolean allowGenerated) {
+        final SpecializedInterfaces.Selection selection = SpecializedInterfaces.select(implType, allowGenerated);
+        if (selection == null) {
+            throw new IllegalArgumentException("No java.util.function interface can implement " + implType);
+        }
+        return selection;
+    }
+
+    public <T> CompletableFuture<T> wrapAsync(final Executable implementation, final Parameters<T> parameters) {
+        return wrapAsync(implementation, parameters, ForkJoinPool.commonPool());
+    }
+
+    public <T> CompletableFuture<T> wrapAsync(final Executable implementation, final Parameters<T> parameters,
+                                              final Executor executor) {
+        return coalesce(new InFlightKey(this, implementation, parameters),
+                () -> wrap(implementation, parameters), executor);
+    }
+
+    public <T> CompletableFuture<T> wrapMethodHandleAsync(final MethodHandle implementation,
+                                                          final Parameters<T> parameters) {
+        return wrapMethodHandleAsync(implementation, parameters, ForkJoinPool.commonPool());
+    }
+
+    public <T> CompletableFuture<T> wrapMethodHandleAsync(final MethodHandle implementation,
+                                                          final Parameters<T> parameters, final Executor executor) {
+        return coalesce(new InFlightKey(this, implementation, parameters),
+                () -> wrapMethodHandle(implementation, parameters), executor);
+    }
+
+    public CompletableFuture<List<Object>> wrapAllAsync(final Collection<? extends WrapRequest<?>> requests) {
+        return wrapAllAsync(requests, ForkJoinPool.commonPool());
+    }
+
+    // Results are in the same order as the requests
+    public CompletableFuture<List<Object>> wrapAllAsync(final Collection<? extends WrapRequest<?>> requests,
+                                                        final ForkJoinPool pool) {
+        final List<CompletableFuture<?>> futures = new ArrayList<>(requests.size());
+        for (final WrapRequest<?> request : requests) {
+            futures.add(wrapAsync(request.implementation, request.parameters, pool));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().<Object>map(CompletableFuture::join).toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> coalesce(final InFlightKey key, final Supplier<T> spin,
+                                                     final Executor executor) {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = IN_FLIGHT.putIfAbsent(key, future);
+        if (existing != null) {
+            return (CompletableFuture<T>) existing.copy();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(spin.get());
+                } catch (final Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    IN_FLIGHT.remove(key, future);
+                }
+            });
+        } catch (final RuntimeException e) {
+            IN_FLIGHT.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        // Callers get copies, so that none of them can complete the shared future
+        return (CompletableFuture<T>) future.copy();
+    }
+
     @SuppressWarnings("unchecked")
     protected final <T> T wrapMethodHandleUncached(final MethodHandle implementation, final Parameters<T> parameters) {
-        final FunctionalInterfaceDescriptor descriptor = getDescriptor(parameters.functionalInterface);
         final MethodType implType = implementation.type();
+        final List<Object> capturedParameters = packVarargs(implType, parameters.capturedParameters);
+        if (parameters.profiled) {
+            return (T) spinForwarder(parameters, LambdaProfiler.instrument(implementation,
+                    bindCaptured(implementation.asFixedArity(), capturedParameters)));
+        }
+        if (!isDirect(implementation)) {
+            // LambdaMetafactory only takes direct handles, so hold this one as a constant in a spun class instead
+            return (T) spinForwarder(parameters, bindCaptured(implementation.asFixedArity(), capturedParameters));
+        }
+        return prepareMethodHandle(implementation, parameters.shape(implType, capturedParameters.size()))
+                .create(capturedParameters);
+    }
+
+    private static List<Object> packVarargs(final MethodType implType, final List<Object> capturedParameters) {
         final int implParamCount = implType.parameterCount();
-        List<Object> capturedParameters = parameters.capturedParameters;
         final int capturedParamCount = capturedParameters.size();
-        final Class<?>[] capturedTypes;
-        final MethodType invocationType;
-        if (implParamCount > 0) {
-            final Class<?> lastImplParamType = implType.parameterType(implParamCount - 1);
-            if (lastImplParamType.isArray()
-                    && (capturedParameters.isEmpty()
-                    || !capturedParameters.getLast().getClass().isArray())
-            ) {
-                final int varargsLength = capturedParamCount - implParamCount + 1;
-                final Object varargs = Array.newInstance(lastImplParamType.componentType(), varargsLength);
-                for (int i = 0; i < varargsLength; i++) {
-                    Array.set(varargs, i, capturedParameters.get(i + implParamCount - 1));
-                }
-                capturedParameters = new ArrayList<>(capturedParameters.subList(0, implParamCount));
-                capturedParameters.set(implParamCount - 1, varargs);
-            }
-            capturedTypes = capturedParameters.stream().map(Object::getClass).toArray(Class[]::new);
-            final int paramsReplacedWithCaptures = Math.min(capturedParamCount, implParamCount);
-            invocationType = implType.dropParameterTypes(0,
-                    paramsReplacedWithCaptures);
-            for (int i = 0; i < capturedParameters.size(); i++) {
-                final Class<?> implParamType = implType.parameterType(i);
-                if (implParamType.isPrimitive()) {
-                    capturedTypes[i] = implParamType;
-                }
+        if (implParamCount == 0 || capturedParamCount < implParamCount) {
+            return capturedParameters;
+        }
+        final Class<?> lastImplParamType = implType.parameterType(implParamCount - 1);
+        if (!lastImplParamType.isArray() || (capturedParamCount == implParamCount
+                && capturedParameters.getLast() != null && capturedParameters.getLast().getClass().isArray())) {
+            return capturedParameters;
+        }
+        final int varargsLength = capturedParamCount - implParamCount + 1;
+        final Object varargs = Array.newInstance(lastImplParamType.componentType(), varargsLength);
+        for (int i = 0; i < varargsLength; i++) {
+            Array.set(varargs, i, capturedParameters.get(i + implParamCount - 1));
+        }
+        final List<Object> packed = new ArrayList<>(capturedParameters.subList(0, implParamCount));
+        packed.set(implParamCount - 1, varargs);
+        return packed;
+    }
+
+    public <T> CapturingFactory<T> prepare(final Executable implementation, final Shape<T> shape) {
+        return cacheManager.prepare(this, implementation, shape);
+    }
+
+    protected <T> CapturingFactory<T> prepareUncached(final Executable implementation, final Shape<T> shape) {
+        if (implementation instanceof Method && !shape.capturedTypes.isEmpty()
+                && !Modifier.isStatic(implementation.getModifiers())
+                && !implementation.getDeclaringClass().isAssignableFrom(shape.capturedTypes.getFirst())) {
+            throw new IllegalArgumentException("First captured type for an instance method must be the "
+                    + "receiver type and must implement that method");
+        }
+        return prepareMethodHandleUncached(getUnreflectedImplementation(implementation), shape);
+    }
+
+    // Like wrapMethodHandle, doesn't cache non-direct handles
+    public <T> CapturingFactory<T> prepareMethodHandle(final MethodHandle implementation, final Shape<T> shape) {
+        if (!isDirect(implementation)) {
+            return prepareMethodHandleUncached(implementation, shape);
+        }
+        return cacheManager.prepareMethodHandle(this, implementation, shape);
+    }
+
+    protected final <T> CapturingFactory<T> prepareMethodHandleUncached(final MethodHandle implementation,
+                                                                          final Shape<T> shape) {
+        if (!isDirect(implementation)) {
+            if (!shape.capturedTypes.isEmpty()) {
+                throw new IllegalArgumentException("Can't prepare a capturing factory for a non-direct handle; bind "
+                        + "it with wrapMethodHandle instead");
             }
-        } else {
-            capturedTypes = EMPTY_CLASS_ARRAY;
-            invocationType = implType;
+            final Object instance = spinForwarder(Parameters.builder(shape.functionalInterface)
+                    .serializable(shape.serializable)
+                    .addMarkerInterfaces(shape.markerInterfaces)
+                    .addBridgeOverloads(shape.bridgeOverloadTypes)
+                    .build(), implementation.asFixedArity());
+            return new CapturingFactory<>(MethodHandles.constant(shape.functionalInterface, instance), shape);
         }
-        final MethodType factoryType = MethodType.methodType(parameters.functionalInterface, capturedTypes);
+        final FunctionalInterfaceDescriptor descriptor = getDescriptor(shape.functionalInterface);
+        final MethodType implType = implementation.type();
+        final int capturedParamCount = shape.capturedTypes.size();
+        if (capturedParamCount > implType.parameterCount()) {
+            throw new IllegalArgumentException("Can't capture " + capturedParamCount + " parameters for an "
+                    + "implementation of type " + implType);
+        }
+        final MethodType invocationType = implType.dropParameterTypes(0, capturedParamCount);
+        final MethodType factoryType = MethodType.methodType(shape.functionalInterface,
+                shape.capturedTypes.toArray(EMPTY_CLASS_ARRAY));
         final MethodType descriptorType = descriptor.methodType;
+        final LambdaSpinEvent event = new LambdaSpinEvent();
+        event.begin();
+        final long spinStartTime = LambdaMetafactoryMetrics.spinStartTime();
         try {
             final CallSite callSite;
-            if (parameters.bridgeOverloadTypes.isEmpty() && parameters.markerInterfaces.isEmpty()
-                    && !parameters.serializable) {
+            if (shape.bridgeOverloadTypes.isEmpty() && shape.markerInterfaces.isEmpty()
+                    && !shape.serializable) {
                 callSite = LambdaMetafactory.metafactory(lookup, descriptor.methodName, factoryType,
                         descriptorType, implementation, invocationType);
             } else {
@@ -131,37 +587,66 @@ public class LambdaMetafactoryWrapper {
                 additionalParameters.add(0);
                 int flags = 0;
                 final MethodHandles.Lookup outputLookup;
-                if (parameters.serializable || Serializable.class.isAssignableFrom(parameters.functionalInterface)
-                    || parameters.markerInterfaces.stream().anyMatch(Serializable.class::isAssignableFrom)) {
+                if (shape.serializable || Serializable.class.isAssignableFrom(shape.functionalInterface)
+                    || shape.markerInterfaces.stream().anyMatch(Serializable.class::isAssignableFrom)) {
                     flags |= FLAG_SERIALIZABLE;
                     outputLookup = serialLookup;
                 } else {
                     outputLookup = lookup;
                 }
-                if (!parameters.markerInterfaces.isEmpty()) {
+                if (!shape.markerInterfaces.isEmpty()) {
                     flags |= FLAG_MARKERS;
-                    additionalParameters.ensureCapacity(parameters.markerInterfaces.size() + 5);
-                    additionalParameters.add(parameters.markerInterfaces.size());
-                    additionalParameters.addAll(parameters.markerInterfaces);
+                    additionalParameters.ensureCapacity(shape.markerInterfaces.size() + 5);
+                    additionalParameters.add(shape.markerInterfaces.size());
+                    additionalParameters.addAll(shape.markerInterfaces);
                 }
-                if (!parameters.bridgeOverloadTypes.isEmpty()) {
+                if (!shape.bridgeOverloadTypes.isEmpty()) {
                     flags |= FLAG_BRIDGES;
                     additionalParameters.ensureCapacity(additionalParameters.size()
-                            + parameters.bridgeOverloadTypes.size() + 1);
-                    additionalParameters.add(parameters.bridgeOverloadTypes.size());
-                    additionalParameters.addAll(parameters.bridgeOverloadTypes);
+                            + shape.bridgeOverloadTypes.size() + 1);
+                    additionalParameters.add(shape.bridgeOverloadTypes.size());
+                    additionalParameters.addAll(shape.bridgeOverloadTypes);
                 }
                 additionalParameters.set(3, flags);
                 callSite = LambdaMetafactory.altMetafactory(outputLookup, descriptor.methodName, factoryType,
                         additionalParameters.toArray());
             }
-            return (T) callSite.getTarget().invokeWithArguments(capturedParameters);
+            LambdaMetafactoryMetrics.recordSpin(spinStartTime);
+            event.end();
+            if (event.shouldCommit()) {
+                event.implementation = describe(implementation);
+                event.functionalInterface = shape.functionalInterface;
+                event.capturedParameterCount = capturedParamCount;
+                event.serializable = shape.serializable;
+                event.commit();
+            }
+            return new CapturingFactory<>(callSite.getTarget(), shape);
         } catch (final Throwable t) {
             throw (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
         }
     }
 
-    private static Class<?> classForSlashDelimitedName(final String slashDelimitedName) {
+    private boolean isDirect(final MethodHandle implementation) {
+        return directHandles.computeIfAbsent(implementation, handle -> {
+            try {
+                lookup.revealDirect(handle);
+                return true;
+            } catch (final IllegalArgumentException e) {
+                return false;
+            }
+        });
+    }
+
+    private String describe(final MethodHandle implementation) {
+        try {
+            final MethodHandleInfo info = lookup.revealDirect(implementation);
+            return info.getDeclaringClass().getName() + "." + info.getName() + info.getMethodType();
+        } catch (final IllegalArgumentException e) {
+            return implementation.toString();
+        }
+    }
+
+    static Class<?> classForSlashDelimitedName(final String slashDelimitedName) {
         try {
             return Class.forName(slashDelimitedName.replace('/', '.'));
         } catch (final ClassNotFoundException e) {
@@ -193,19 +678,32 @@ public class LambdaMetafactoryWrapper {
     }
 
     static Object deserializeLambdaUncached(SerializedLambda lambda) {
+        return createDeserialized(prepareDeserializedUncached(lambda), lambda);
+    }
+
+    /**
+     * Prepares the factory that every lambda with the same {@link SerializedLambdaKey} is deserialized through, so a
+     * cache of these grows with the number of distinct lambdas rather than the number of distinct captured arguments.
+     */
+    static CapturingFactory<?> prepareDeserializedUncached(SerializedLambda lambda) {
         final Executable implementation = LambdaMetafactoryWrapper.findMethod(new SerializedLambdaMethodDescription(
                 lambda.getImplClass(), lambda.getImplMethodName(),
                 lambda.getImplMethodSignature()));
         final Class<?> functionalInterface = LambdaMetafactoryWrapper.classForSlashDelimitedName(lambda.getFunctionalInterfaceClass());
-        final ArrayList<Object> capturedParams = new ArrayList<>(lambda.getCapturedArgCount());
-        for (int i = 0; i < lambda.getCapturedArgCount(); i++) {
-            capturedParams.add(lambda.getCapturedArg(i));
+        final LambdaMetafactoryWrapper wrapper = getDefaultInstance();
+        final MethodType implType = wrapper.getUnreflectedImplementation(implementation).type();
+        return wrapper.prepare(implementation, Shape.builder(functionalInterface)
+                .serializable(true)
+                .addCapturedTypes(implType.parameterList().subList(0, lambda.getCapturedArgCount()))
+                .build());
+    }
+
+    static Object createDeserialized(final CapturingFactory<?> factory, final SerializedLambda lambda) {
+        final Object[] capturedArgs = new Object[lambda.getCapturedArgCount()];
+        for (int i = 0; i < capturedArgs.length; i++) {
+            capturedArgs[i] = lambda.getCapturedArg(i);
         }
-        return getDefaultInstance().wrap(implementation,
-                Parameters.builder(functionalInterface)
-                        .serializable(true)
-                        .addCapturedParameters(capturedParams)
-                        .build());
+        return factory.create(capturedArgs);
     }
 
     protected <T> FunctionalInterfaceDescriptor getDescriptor(final Class<? super T> functionalInterface) {
@@ -265,23 +763,133 @@ public class LambdaMetafactoryWrapper {
             MethodType nonCapturingReturning) {
     }
 
-    public record Parameters<T>(
-            Class<? super T> functionalInterface,
-            boolean serializable,
-            List<MethodType> bridgeOverloadTypes,
-            List<Object> capturedParameters,
-            List<Class<?>> markerInterfaces
-    ) {
+    /**
+     * Immutable, so that it's safe to use as a cache key; the hash code is computed once. With identity capture,
+     * captured parameters are compared by reference, so lookups don't traverse large captured objects.
+     */
+    public static final class Parameters<T> {
+        private final Class<? super T> functionalInterface;
+        private final boolean serializable;
+        private final List<MethodType> bridgeOverloadTypes;
+        private final List<Object> capturedParameters;
+        private final List<Class<?>> markerInterfaces;
+        private final boolean identityCapture;
+        private final boolean profiled;
+        private final int hashCode;
+        // Almost always used with only one implementation type, so remembering the last shape is enough
+        private volatile ShapeMemo<T> lastShape;
+
+        private record ShapeMemo<T>(MethodType implType, int capturedParamCount, Shape<T> shape) {}
+
+        private Parameters(final Builder<T> builder) {
+            functionalInterface = builder.functionalInterface;
+            serializable = builder.serializable;
+            bridgeOverloadTypes = List.copyOf(builder.bridgeOverloadTypes);
+            // May include nulls, so List.copyOf won't do
+            capturedParameters = Collections.unmodifiableList(Arrays.asList(builder.capturedParameters.toArray()));
+            markerInterfaces = List.copyOf(builder.markerInterfaces);
+            identityCapture = builder.identityCapture;
+            profiled = builder.profiled;
+            int hash = functionalInterface.hashCode();
+            hash = 31 * hash + Boolean.hashCode(serializable);
+            hash = 31 * hash + bridgeOverloadTypes.hashCode();
+            hash = 31 * hash + markerInterfaces.hashCode();
+            hash = 31 * hash + Boolean.hashCode(identityCapture);
+            hash = 31 * hash + Boolean.hashCode(profiled);
+            for (final Object capturedParameter : capturedParameters) {
+                hash = 31 * hash + (identityCapture ? System.identityHashCode(capturedParameter)
+                        : Objects.hashCode(capturedParameter));
+            }
+            hashCode = hash;
+        }
+
         public static <T> Builder<T> builder(final Class<? super T> functionalInterface) {
             return new Builder<>(functionalInterface);
         }
 
+        public Class<? super T> functionalInterface() {
+            return functionalInterface;
+        }
+
+        public boolean serializable() {
+            return serializable;
+        }
+
+        public List<MethodType> bridgeOverloadTypes() {
+            return bridgeOverloadTypes;
+        }
+
+        public List<Object> capturedParameters() {
+            return capturedParameters;
+        }
+
+        public List<Class<?>> markerInterfaces() {
+            return markerInterfaces;
+        }
+
+        public boolean identityCapture() {
+            return identityCapture;
+        }
+
+        public boolean profiled() {
+            return profiled;
+        }
+
+        Shape<T> shape(final MethodType implType, final int capturedParamCount) {
+            final ShapeMemo<T> memo = lastShape;
+            if (memo != null && memo.implType.equals(implType) && memo.capturedParamCount == capturedParamCount) {
+                return memo.shape;
+            }
+            final Shape<T> shape = new Shape<>(functionalInterface, serializable, bridgeOverloadTypes,
+                    implType.parameterList().subList(0, Math.min(capturedParamCount, implType.parameterCount())),
+                    markerInterfaces);
+            lastShape = new ShapeMemo<>(implType, capturedParamCount, shape);
+            return shape;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Parameters<?> other) || hashCode != other.hashCode
+                    || functionalInterface != other.functionalInterface || serializable != other.serializable
+                    || identityCapture != other.identityCapture || profiled != other.profiled
+                    || capturedParameters.size() != other.capturedParameters.size()
+                    || !bridgeOverloadTypes.equals(other.bridgeOverloadTypes)
+                    || !markerInterfaces.equals(other.markerInterfaces)) {
+                return false;
+            }
+            for (int i = 0; i < capturedParameters.size(); i++) {
+                final Object mine = capturedParameters.get(i);
+                final Object theirs = other.capturedParameters.get(i);
+                if (identityCapture ? mine != theirs : !Objects.equals(mine, theirs)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return "Parameters[functionalInterface=" + functionalInterface + ", serializable=" + serializable
+                    + ", bridgeOverloadTypes=" + bridgeOverloadTypes + ", capturedParameters=" + capturedParameters
+                    + ", markerInterfaces=" + markerInterfaces + ", identityCapture=" + identityCapture + ", profiled=" + profiled + "]";
+        }
+
         public static class Builder<T> {
             // Defaults
             private boolean serializable = false;
             private final ArrayList<MethodType> bridgeOverloadTypes = new ArrayList<>();
             private final ArrayList<Object> capturedParameters = new ArrayList<>(); // may include nulls
             private final ArrayList<Class<?>> markerInterfaces = new ArrayList<>();
+            private boolean identityCapture = false;
+            private boolean profiled = false;
             private final Class<? super T> functionalInterface;
 
             Builder(final Class<? super T> functionalInterface) {
@@ -339,17 +947,183 @@ public class LambdaMetafactoryWrapper {
                 return this;
             }
 
+            public Builder<T> identityCapture(final boolean identityCapture) {
+                this.identityCapture = identityCapture;
+                return this;
+            }
+
+            /**
+             * Counts the lambda's invocations and exceptions, and samples its latency, in {@link LambdaProfiler}. A
+             * profiled lambda calls its implementation through a spun class rather than LambdaMetafactory, so it
+             * can't be serializable or have marker interfaces or bridges.
+             */
+            public Builder<T> profiled(final boolean profiled) {
+                this.profiled = profiled;
+                return this;
+            }
+
+            // The builder can safely be reused afterward
             public Parameters<T> build() {
-                return new Parameters<>(
+                return new Parameters<>(this);
+            }
+        }
+    }
+
+    public record Shape<T>(
+            Class<? super T> functionalInterface,
+            boolean serializable,
+            List<MethodType> bridgeOverloadTypes,
+            List<Class<?>> capturedTypes,
+            List<Class<?>> markerInterfaces
+    ) {
+        public static <T> Builder<T> builder(final Class<? super T> functionalInterface) {
+            return new Builder<>(functionalInterface);
+        }
+
+        public static class Builder<T> {
+            // Defaults
+            private boolean serializable = false;
+            private final ArrayList<MethodType> bridgeOverloadTypes = new ArrayList<>();
+            private final ArrayList<Class<?>> capturedTypes = new ArrayList<>();
+            private final ArrayList<Class<?>> markerInterfaces = new ArrayList<>();
+            private final Class<? super T> functionalInterface;
+
+            Builder(final Class<? super T> functionalInterface) {
+                this.functionalInterface = requireNonNull(functionalInterface);
+            }
+
+            public Builder<T> serializable(final boolean serializable) {
+                this.serializable = serializable;
+                return this;
+            }
+
+            public Builder<T> addMarkerInterface(final Class<?> markerInterface) {
+                markerInterfaces.add(requireNonNull(markerInterface));
+                return this;
+            }
+
+            public Builder<T> addMarkerInterfaces(final Collection<? extends Class<?>> markerInterfaces) {
+                this.markerInterfaces.addAll(markerInterfaces);
+                return this;
+            }
+
+            public Builder<T> addBridgeOverload(final MethodType bridgeOverloadType) {
+                this.bridgeOverloadTypes.add(requireNonNull(bridgeOverloadType));
+                return this;
+            }
+
+            public Builder<T> addBridgeOverloads(final Collection<? extends MethodType> bridgeOverloadTypes) {
+                this.bridgeOverloadTypes.addAll(bridgeOverloadTypes);
+                return this;
+            }
+
+            public Builder<T> addCapturedType(final Class<?> capturedType) {
+                capturedTypes.add(requireNonNull(capturedType));
+                return this;
+            }
+
+            public Builder<T> addCapturedTypes(final Collection<? extends Class<?>> capturedTypes) {
+                this.capturedTypes.addAll(capturedTypes);
+                return this;
+            }
+
+            public Shape<T> build() {
+                return new Shape<>(
                         this.functionalInterface,
                         this.serializable,
-                        this.bridgeOverloadTypes,
-                        this.capturedParameters,
-                        this.markerInterfaces);
+                        List.copyOf(this.bridgeOverloadTypes),
+                        List.copyOf(this.capturedTypes),
+                        List.copyOf(this.markerInterfaces));
+            }
+        }
+    }
+
+    public static final class CapturingFactory<T> {
+        private final MethodHandle factory;
+        private final Shape<T> shape;
+
+        CapturingFactory(final MethodHandle factory, final Shape<T> shape) {
+            this.factory = factory;
+            this.shape = shape;
+        }
+
+        public Shape<T> shape() {
+            return shape;
+        }
+
+        public MethodHandle factoryHandle() {
+            return factory;
+        }
+
+        public T create(final Object... capturedParameters) {
+            return create(Arrays.asList(capturedParameters));
+        }
+
+        @SuppressWarnings("unchecked")
+        public T create(final List<?> capturedParameters) {
+            if (capturedParameters.size() != shape.capturedTypes.size()) {
+                throw new IllegalArgumentException("Expected " + shape.capturedTypes.size()
+                        + " captured parameters, but got " + capturedParameters.size());
+            }
+            try {
+                return (T) factory.invokeWithArguments(capturedParameters);
+            } catch (final Throwable t) {
+                throw (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
             }
         }
     }
 
+    /**
+     * Creates instances of one shared class, each bound to a different method or constructor of the same declaring
+     * class. Each instance is created on first use and then reused.
+     */
+    public static final class SharedDispatcher<T> {
+        private final List<Executable> targets;
+        private final Map<Executable, Integer> indices;
+        private final MethodHandle constructor;
+        private final AtomicReferenceArray<T> instances;
+
+        SharedDispatcher(final List<Executable> targets, final MethodHandle constructor) {
+            this.targets = List.copyOf(targets);
+            final Map<Executable, Integer> indices = new HashMap<>();
+            for (int i = 0; i < targets.size(); i++) {
+                indices.put(targets.get(i), i);
+            }
+            this.indices = Map.copyOf(indices);
+            this.constructor = constructor;
+            instances = new AtomicReferenceArray<>(targets.size());
+        }
+
+        // In dispatch order
+        public List<Executable> targets() {
+            return targets;
+        }
+
+        public boolean canDispatchTo(final Executable implementation) {
+            return indices.containsKey(implementation);
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(final Executable implementation) {
+            final Integer index = indices.get(implementation);
+            if (index == null) {
+                throw new IllegalArgumentException(implementation + " doesn't fit this dispatcher's interface "
+                        + "without capturing");
+            }
+            final T existing = instances.get(index);
+            if (existing != null) {
+                return existing;
+            }
+            final T created;
+            try {
+                created = (T) (Object) constructor.invokeExact((int) index);
+            } catch (final Throwable t) {
+                throw (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
+            }
+            return instances.compareAndSet(index, null, created) ? created : instances.get(index);
+        }
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(lookup, getClass());
@@ -361,6 +1135,44 @@ public class LambdaMetafactoryWrapper {
                 (obj.getClass() == getClass() && lookup == ((LambdaMetafactoryWrapper)obj).lookup);
     }
 
+    record FieldAccessKey(VarHandle.AccessMode accessMode, Parameters<?> parameters) {}
+
+    record TieredKey(Parameters<?> parameters, int promotionThreshold) {}
+
+    private record InFlightKey(LambdaMetafactoryWrapper wrapper, Object implementation, Parameters<?> parameters) {}
+
+    public record Specialized<T>(Class<? super T> functionalInterface, int boxingConversions, T instance) {}
+
+    public record WrapRequest<T>(Executable implementation, Parameters<T> parameters) {}
+
+    /**
+     * Value-based stand-in for {@link SerializedLambda}, which inherits identity equality. Captured arrays are compared
+     * deeply, since varargs implementations capture them.
+     */
+    // Identifies the spun class, not the instance, so captured arguments aren't part of it
+    public record SerializedLambdaKey(
+            String implClass,
+            String implMethodName,
+            String implMethodSignature,
+            int implMethodKind,
+            String functionalInterfaceClass,
+            String functionalInterfaceMethodName,
+            String functionalInterfaceMethodSignature,
+            String instantiatedMethodType,
+            int capturedArgCount
+    ) {
+        public static SerializedLambdaKey of(final SerializedLambda lambda) {
+            return new SerializedLambdaKey(lambda.getImplClass(), lambda.getImplMethodName(),
+                    lambda.getImplMethodSignature(), lambda.getImplMethodKind(), lambda.getFunctionalInterfaceClass(),
+                    lambda.getFunctionalInterfaceMethodName(), lambda.getFunctionalInterfaceMethodSignature(),
+                    lambda.getInstantiatedMethodType(), lambda.getCapturedArgCount());
+        }
+
+        public SerializedLambdaMethodDescription methodDescription() {
+            return new SerializedLambdaMethodDescription(implClass, implMethodName, implMethodSignature);
+        }
+    }
+
     public record SerializedLambdaMethodDescription(
             String slashDelimitedClassName,
             String methodName,
@@ -0,0 +1,172 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for lambdas wrapped with {@link LambdaMetafactoryWrapper.Parameters.Builder#profiled}, keyed by the
+ * {@link Executable} or {@link MethodHandle} they were wrapped from. Every lambda with the same implementation shares
+ * its counters, whatever it captured. An executable's counters belong to its declaring class, so they last as long as
+ * that class, whichever copy of the executable was wrapped or is later asked about; a handle's are weakly keyed by
+ * it. Either way, profiling doesn't keep a class loader alive.
+ */
+public final class LambdaProfiler {
+    /**
+     * Times one in this many invocations, picked at random; 0, the default, disables latency sampling.
+     */
+    public static final String SAMPLE_PERIOD_PROPERTY = "io.github.pr0methean.invoke.profileSamplePeriod";
+    // Constant, so that the JIT removes the sampling branch when it's 0
+    static final int SAMPLE_PERIOD = Integer.getInteger(SAMPLE_PERIOD_PROPERTY, 0);
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+    private static final MethodHandle ENTER;
+    private static final MethodHandle EXIT;
+    // Keyed by name and descriptor, since reflection hands out a new copy of an executable on every request
+    private static final ClassValue<ConcurrentMap<String, Counters>> EXECUTABLE_COUNTERS = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, Counters> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    // The classes with executable counters, since a ClassValue can't enumerate them
+    private static final ConcurrentWeakKeyMap<Class<?>, Boolean> PROFILED_CLASSES = new ConcurrentWeakKeyMap<>();
+    private static final ConcurrentWeakKeyMap<MethodHandle, Counters> HANDLE_COUNTERS = new ConcurrentWeakKeyMap<>();
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ENTER = lookup.findStatic(LambdaProfiler.class, "enter",
+                    MethodType.methodType(long.class, Counters.class));
+            EXIT = lookup.findStatic(LambdaProfiler.class, "exit",
+                    MethodType.methodType(void.class, Counters.class, Throwable.class, long.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public record Snapshot(long invocations, long exceptions, long sampledInvocations, long sampledNanos) {
+        // NaN when no invocation was sampled
+        public double meanSampledNanos() {
+            return (double) sampledNanos / sampledInvocations;
+        }
+    }
+
+    private static final class Counters {
+        // Null for a handle, which mustn't be strongly reachable from its own weak map's values
+        final Executable executable;
+        final LongAdder invocations = new LongAdder();
+        final LongAdder exceptions = new LongAdder();
+        final LongAdder sampledInvocations = new LongAdder();
+        final LongAdder sampledNanos = new LongAdder();
+
+        Counters(final Executable executable) {
+            this.executable = executable;
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(invocations.sum(), exceptions.sum(), sampledInvocations.sum(), sampledNanos.sum());
+        }
+    }
+
+    private LambdaProfiler() {}
+
+    public static Map<Object, Snapshot> snapshot() {
+        final Map<Object, Snapshot> snapshot = new LinkedHashMap<>();
+        for (final Class<?> type : PROFILED_CLASSES.keySet()) {
+            for (final Counters counters : EXECUTABLE_COUNTERS.get(type).values()) {
+                snapshot.put(counters.executable, counters.snapshot());
+            }
+        }
+        for (final Map.Entry<MethodHandle, Counters> entry : HANDLE_COUNTERS.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    // Null if no profiled lambda has been wrapped from the implementation
+    public static Snapshot snapshot(final Object implementation) {
+        final Counters counters;
+        if (implementation instanceof Executable executable) {
+            counters = PROFILED_CLASSES.containsKey(executable.getDeclaringClass())
+                    ? EXECUTABLE_COUNTERS.get(executable.getDeclaringClass()).get(key(executable)) : null;
+        } else {
+            counters = HANDLE_COUNTERS.get(implementation);
+        }
+        return counters == null ? null : counters.snapshot();
+    }
+
+    /**
+     * Forgets every counter. Lambdas that are already wrapped keep counting, but only into their old counters.
+     */
+    public static void reset() {
+        for (final Class<?> type : PROFILED_CLASSES.keySet()) {
+            EXECUTABLE_COUNTERS.get(type).clear();
+        }
+        PROFILED_CLASSES.clear();
+        HANDLE_COUNTERS.clear();
+    }
+
+    private static String key(final Executable executable) {
+        final Class<?> returnType = executable instanceof Method method ? method.getReturnType() : void.class;
+        return (executable instanceof Method ? executable.getName() : "<init>")
+                + MethodType.methodType(returnType, executable.getParameterTypes()).toMethodDescriptorString();
+    }
+
+    private static Counters countersFor(final Object implementation) {
+        if (implementation instanceof Executable executable) {
+            final Class<?> declaringClass = executable.getDeclaringClass();
+            PROFILED_CLASSES.putIfAbsent(declaringClass, Boolean.TRUE);
+            return EXECUTABLE_COUNTERS.get(declaringClass).computeIfAbsent(key(executable),
+                    ignored -> new Counters(executable));
+        }
+        return HANDLE_COUNTERS.computeIfAbsent((MethodHandle) implementation, ignored -> new Counters(null));
+    }
+
+    /**
+     * Returns a handle of the same type as {@code target} that records each call under {@code implementation}.
+     */
+    static MethodHandle instrument(final Object implementation, final MethodHandle target) {
+        final Counters counters = countersFor(implementation);
+        final Class<?> returnType = target.type().returnType();
+        final MethodHandle exit = EXIT.bindTo(counters);
+        // The cleanup takes the throwable, the result if there is one, and the start time that enter returned
+        final MethodHandle cleanup;
+        if (returnType == void.class) {
+            cleanup = exit;
+        } else {
+            final MethodHandle passResult = MethodHandles.dropArguments(MethodHandles.identity(returnType), 0,
+                    Throwable.class);
+            cleanup = MethodHandles.foldArguments(MethodHandles.dropArguments(passResult, 2, long.class),
+                    MethodHandles.dropArguments(exit, 1, returnType));
+        }
+        return MethodHandles.foldArguments(
+                MethodHandles.tryFinally(MethodHandles.dropArguments(target, 0, long.class), cleanup),
+                ENTER.bindTo(counters));
+    }
+
+    private static long enter(final Counters counters) {
+        counters.invocations.increment();
+        if (SAMPLE_PERIOD > 0 && ThreadLocalRandom.current().nextInt(SAMPLE_PERIOD) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    private static void exit(final Counters counters, final Throwable thrown, final long startTime) {
+        if (thrown != null) {
+            counters.exceptions.increment();
+        }
+        if (startTime != NOT_SAMPLED) {
+            counters.sampledNanos.add(System.nanoTime() - startTime);
+            counters.sampledInvocations.increment();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.pr0methean.invoke;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.pr0methean.invoke.LambdaSpin")
+@Label("Lambda Spin")
+@Category({"Java Application", "LambdaMetafactoryWrapper"})
+@Description("A class generated by LambdaMetafactory, or spun as a hidden class, for a wrapped implementation")
+@StackTrace(false)
+class LambdaSpinEvent extends Event {
+    // For a spun hidden class, which may forward to several handles, the name of that class
+    @Label("Implementation")
+    String implementation;
+
+    @Label("Functional Interface")
+    Class<?> functionalInterface;
+
+    @Label("Captured Parameter Count")
+    int capturedParameterCount;
+
+    @Label("Serializable")
+    boolean serializable;
+}
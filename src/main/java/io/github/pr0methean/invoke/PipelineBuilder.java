@@ -0,0 +1,141 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Executable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Returned by {@link LambdaMetafactoryWrapper#pipeline}: composes map, guard and tee stages over a single value into
+ * one method handle tree, and wraps it as one spun class. Unlike a chain of {@code andThen} calls, there's no
+ * interface call between stages, so the whole pipeline inlines as a unit even where it's called from a megamorphic
+ * site.
+ */
+public final class PipelineBuilder {
+    private enum Kind { MAP, GUARD, TEE }
+
+    private record Stage(Kind kind, MethodHandle handle, MethodHandle fallback) {}
+
+    private final LambdaMetafactoryWrapper wrapper;
+    private final List<Stage> stages = new ArrayList<>();
+    private Class<?> currentType;
+
+    PipelineBuilder(final LambdaMetafactoryWrapper wrapper, final Class<?> inputType) {
+        this.wrapper = wrapper;
+        currentType = requireNonNull(inputType);
+    }
+
+    /**
+     * Replaces the value with the stage's result. Any captured parameters come before the value.
+     */
+    public PipelineBuilder map(final Executable stage, final Object... capturedParameters) {
+        return map(bind(stage, capturedParameters));
+    }
+
+    public PipelineBuilder map(final MethodHandle stage) {
+        final MethodHandle adapted = adapt(stage, stage.type().returnType());
+        if (adapted.type().returnType() == void.class) {
+            throw new IllegalArgumentException("A map stage must return a value; use tee for " + stage);
+        }
+        stages.add(new Stage(Kind.MAP, adapted, null));
+        currentType = adapted.type().returnType();
+        return this;
+    }
+
+    /**
+     * Skips the remaining stages when the predicate is false, and returns zero, false or null instead.
+     */
+    public PipelineBuilder filter(final Executable predicate, final Object... capturedParameters) {
+        return filter(bind(predicate, capturedParameters));
+    }
+
+    public PipelineBuilder filter(final MethodHandle predicate) {
+        stages.add(new Stage(Kind.GUARD, adapt(predicate, boolean.class), null));
+        return this;
+    }
+
+    /**
+     * Skips the remaining stages when the predicate is false, and returns the fallback's result for the current value
+     * instead.
+     */
+    public PipelineBuilder guard(final MethodHandle predicate, final MethodHandle fallback) {
+        stages.add(new Stage(Kind.GUARD, adapt(predicate, boolean.class), requireNonNull(fallback)));
+        return this;
+    }
+
+    /**
+     * Passes the value to the stage, and then passes it on unchanged.
+     */
+    public PipelineBuilder tee(final Executable stage, final Object... capturedParameters) {
+        return tee(bind(stage, capturedParameters));
+    }
+
+    public PipelineBuilder tee(final MethodHandle stage) {
+        stages.add(new Stage(Kind.TEE, adapt(stage, void.class), null));
+        return this;
+    }
+
+    /**
+     * Returns the composed handle, which takes the input and returns the last map stage's result.
+     */
+    public MethodHandle toMethodHandle() {
+        // Built back to front, so that each stage wraps everything after it
+        MethodHandle tail = MethodHandles.identity(currentType);
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            final Stage stage = stages.get(i);
+            tail = switch (stage.kind) {
+                case MAP -> MethodHandles.filterArguments(tail, 0, stage.handle);
+                case GUARD -> MethodHandles.guardWithTest(stage.handle, tail, stage.fallback == null
+                        ? MethodHandles.empty(tail.type())
+                        : adaptFallback(stage.fallback, tail.type()));
+                case TEE -> MethodHandles.foldArguments(tail, stage.handle);
+            };
+        }
+        return tail;
+    }
+
+    public <T> T build(final Class<? super T> functionalInterface) {
+        return build(LambdaMetafactoryWrapper.Parameters.<T>builder(functionalInterface).build());
+    }
+
+    /**
+     * Wraps the composed handle. Captured parameters in {@code parameters} aren't supported, since every stage already
+     * has its own.
+     */
+    public <T> T build(final LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        if (!parameters.capturedParameters().isEmpty()) {
+            throw new IllegalArgumentException("Capture parameters on individual stages instead");
+        }
+        return wrapper.wrapComposed(toMethodHandle(), parameters);
+    }
+
+    private MethodHandle bind(final Executable stage, final Object[] capturedParameters) {
+        return wrapper.bindImplementation(stage, Arrays.asList(capturedParameters));
+    }
+
+    private MethodHandle adapt(final MethodHandle stage, final Class<?> returnType) {
+        if (stage.type().parameterCount() != 1) {
+            throw new IllegalArgumentException("A stage must take exactly one uncaptured parameter, but " + stage
+                    + " takes " + stage.type().parameterCount());
+        }
+        try {
+            return stage.asType(MethodType.methodType(returnType, currentType));
+        } catch (final WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Can't pass a " + currentType.getName() + " to " + stage, e);
+        }
+    }
+
+    private static MethodHandle adaptFallback(final MethodHandle fallback, final MethodType type) {
+        try {
+            return fallback.asType(type);
+        } catch (final WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Fallback " + fallback + " doesn't fit " + type, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class PrecompiledLambdaFactories {
+    private static final Logger LOG = Logger.getLogger(PrecompiledLambdaFactories.class.getSimpleName());
+    private static final PrecompiledLambdaFactory NONE = new PrecompiledLambdaFactory() {
+        @Override
+        public <T> T wrap(final Executable implementation, final LambdaMetafactoryWrapper.Parameters<T> parameters) {
+            return null;
+        }
+    };
+
+    // ClassValue, so that a generated factory never outlives the class it covers
+    private static final ClassValue<PrecompiledLambdaFactory> FACTORIES = new ClassValue<>() {
+        @Override
+        protected PrecompiledLambdaFactory computeValue(final Class<?> type) {
+            if (type.isHidden() || type.isArray() || type.isPrimitive()) {
+                return NONE;
+            }
+            final Class<?> factoryClass;
+            try {
+                factoryClass = Class.forName(type.getName() + PrecompiledLambdaFactory.CLASS_NAME_SUFFIX, true,
+                        type.getClassLoader());
+            } catch (final ClassNotFoundException e) {
+                return NONE;
+            }
+            try {
+                return (PrecompiledLambdaFactory) factoryClass.getConstructor().newInstance();
+            } catch (final ReflectiveOperationException | ClassCastException e) {
+                LOG.log(Level.WARNING, "Can't use generated factory " + factoryClass.getName(),
+                        e instanceof InvocationTargetException ? e.getCause() : e);
+                return NONE;
+            }
+        }
+    };
+
+    private PrecompiledLambdaFactories() {}
+
+    static <T> T wrap(final Executable implementation, final LambdaMetafactoryWrapper.Parameters<T> parameters) {
+        if (!PrecompiledLambdaFactory.isSupported(parameters)) {
+            return null;
+        }
+        return FACTORIES.get(implementation.getDeclaringClass()).wrap(implementation, parameters);
+    }
+}
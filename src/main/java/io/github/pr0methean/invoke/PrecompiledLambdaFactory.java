@@ -0,0 +1,39 @@
+package io.github.pr0methean.invoke;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.util.Arrays;
+
+/**
+ * Implemented by the classes generated for {@link WrapAs}. A generated class is named after the class it covers, plus
+ * {@value #CLASS_NAME_SUFFIX}, and must have a public no-arg constructor.
+ */
+public interface PrecompiledLambdaFactory {
+    String CLASS_NAME_SUFFIX = "$$WrapAsFactories";
+
+    // Returns null when this factory doesn't cover the implementation and parameters
+    <T> T wrap(Executable implementation, LambdaMetafactoryWrapper.Parameters<T> parameters);
+
+    static boolean matches(final Executable implementation, final String name, final Class<?>... parameterTypes) {
+        final String actualName = (implementation instanceof Constructor<?>) ? "<init>" : implementation.getName();
+        return actualName.equals(name) && Arrays.equals(implementation.getParameterTypes(), parameterTypes);
+    }
+
+    // Precompiled lambdas can't add bridges or marker interfaces. Nor are they serializable, since only a lambda from
+    // LambdaMetafactory has the SerializedLambda form that CompactLambdaCodec and deserializeLambda expect.
+    static boolean isSupported(final LambdaMetafactoryWrapper.Parameters<?> parameters) {
+        return parameters.bridgeOverloadTypes().isEmpty() && parameters.markerInterfaces().isEmpty()
+                && !isSerializable(parameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E extends Throwable> RuntimeException sneakyThrow(final Throwable t) throws E {
+        throw (E) t;
+    }
+
+    static boolean isSerializable(final LambdaMetafactoryWrapper.Parameters<?> parameters) {
+        return parameters.serializable() || Serializable.class.isAssignableFrom(parameters.functionalInterface())
+                || parameters.markerInterfaces().contains(Serializable.class);
+    }
+}
@@ -0,0 +1,343 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Getters, setters and a constructor for every property of a record or bean, indexed by property. Record properties
+ * are its components, in declaration order, and are read-only. Bean properties come from public {@code getX}/{@code
+ * isX} methods and matching {@code setX} methods, sorted by name. All the getters of a declaring class share one
+ * spun class per functional interface, as do the setters, so building this for a large model doesn't spin a class
+ * per method. {@code int}, {@code long} and {@code double} properties also have unboxed getters and setters.
+ */
+public final class PropertyAccessors<T> {
+    private final Class<T> type;
+    private final List<String> names;
+    private final Map<String, Integer> indices;
+    private final Class<?>[] propertyTypes;
+    private final Object[] getters;
+    // Null for read-only properties
+    private final Object[] setters;
+    // ToIntFunction, ToLongFunction or ToDoubleFunction, or null for other types
+    private final Object[] primitiveGetters;
+    // ObjIntConsumer, ObjLongConsumer or ObjDoubleConsumer, or null for other types and read-only properties
+    private final Object[] primitiveSetters;
+    private final Function<Object, T> allArgsConstructor;
+    private final Supplier<T> noArgConstructor;
+
+    private PropertyAccessors(final Class<T> type, final List<String> names, final Class<?>[] propertyTypes,
+                              final Object[] getters, final Object[] setters,
+                              final Object[] primitiveGetters, final Object[] primitiveSetters,
+                              final Function<Object, T> allArgsConstructor, final Supplier<T> noArgConstructor) {
+        this.type = type;
+        this.names = List.copyOf(names);
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            indices.put(names.get(i), i);
+        }
+        this.indices = Map.copyOf(indices);
+        this.propertyTypes = propertyTypes;
+        this.getters = getters;
+        this.setters = setters;
+        this.primitiveGetters = primitiveGetters;
+        this.primitiveSetters = primitiveSetters;
+        this.allArgsConstructor = allArgsConstructor;
+        this.noArgConstructor = noArgConstructor;
+    }
+
+    static <T> PropertyAccessors<T> build(final LambdaMetafactoryWrapper wrapper, final Class<T> type) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface()) {
+            throw new IllegalArgumentException(type + " has no properties");
+        }
+        final List<String> names = new ArrayList<>();
+        final List<Method> getterMethods = new ArrayList<>();
+        final List<Method> setterMethods = new ArrayList<>();
+        if (type.isRecord()) {
+            for (final RecordComponent component : type.getRecordComponents()) {
+                names.add(component.getName());
+                getterMethods.add(component.getAccessor());
+                setterMethods.add(null);
+            }
+        } else {
+            final TreeMap<String, Method> beanGetters = new TreeMap<>();
+            for (final Method method : type.getMethods()) {
+                final String name = beanGetterPropertyName(method);
+                if (name != null) {
+                    beanGetters.putIfAbsent(name, method);
+                }
+            }
+            for (final Map.Entry<String, Method> entry : beanGetters.entrySet()) {
+                names.add(entry.getKey());
+                getterMethods.add(entry.getValue());
+                setterMethods.add(beanSetter(type, entry.getKey(), entry.getValue().getReturnType()));
+            }
+        }
+        final Class<?>[] propertyTypes = getterMethods.stream().map(Method::getReturnType).toArray(Class<?>[]::new);
+        final Object[] getters = wrapPresent(wrapper, getterMethods, Function.class);
+        final Object[] setters = wrapPresent(wrapper, setterMethods, BiConsumer.class);
+        final Object[] primitiveGetters = new Object[names.size()];
+        final Object[] primitiveSetters = new Object[names.size()];
+        for (final Class<?> primitive : new Class<?>[]{int.class, long.class, double.class}) {
+            final List<Method> typedGetters = new ArrayList<>(names.size());
+            final List<Method> typedSetters = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                final boolean matches = propertyTypes[i] == primitive;
+                typedGetters.add(matches ? getterMethods.get(i) : null);
+                typedSetters.add(matches ? setterMethods.get(i) : null);
+            }
+            merge(primitiveGetters, wrapPresent(wrapper, typedGetters, primitiveGetterInterface(primitive)));
+            merge(primitiveSetters, wrapPresent(wrapper, typedSetters, primitiveSetterInterface(primitive)));
+        }
+        Function<Object, T> allArgsConstructor = null;
+        Supplier<T> noArgConstructor = null;
+        if (type.isRecord()) {
+            allArgsConstructor = canonicalConstructor(wrapper, type, propertyTypes);
+        } else if (!Modifier.isAbstract(type.getModifiers())) {
+            try {
+                noArgConstructor = wrapper.<Supplier<T>>wrapShared(type.getConstructor(), Supplier.class);
+            } catch (final NoSuchMethodException e) {
+                // Leave it null; newInstance will throw
+            }
+        }
+        return new PropertyAccessors<>(type, names, propertyTypes, getters, setters, primitiveGetters,
+                primitiveSetters, allArgsConstructor, noArgConstructor);
+    }
+
+    // Wraps the non-null methods in one batch, so each declaring class gets one dispatcher; nulls stay in place
+    @SuppressWarnings("unchecked")
+    private static Object[] wrapPresent(final LambdaMetafactoryWrapper wrapper, final List<Method> methods,
+                                        final Class<?> functionalInterface) {
+        final List<Method> present = methods.stream().filter(Objects::nonNull).toList();
+        final Object[] result = new Object[methods.size()];
+        if (present.isEmpty()) {
+            return result;
+        }
+        final List<Object> wrapped = wrapper.wrapShared(present, (Class<Object>) functionalInterface);
+        for (int i = 0, j = 0; i < result.length; i++) {
+            if (methods.get(i) != null) {
+                result[i] = wrapped.get(j++);
+            }
+        }
+        return result;
+    }
+
+    private static void merge(final Object[] into, final Object[] from) {
+        for (int i = 0; i < into.length; i++) {
+            if (from[i] != null) {
+                into[i] = from[i];
+            }
+        }
+    }
+
+    private static String beanGetterPropertyName(final Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.getParameterCount() != 0
+                || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        final String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    // Same rule as java.beans.Introspector, which this avoids so as not to need java.desktop
+    private static String decapitalize(final String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Method beanSetter(final Class<?> type, final String propertyName, final Class<?> propertyType) {
+        final String suffix = propertyName.length() > 1 && Character.isUpperCase(propertyName.charAt(1))
+                ? propertyName
+                : Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+        try {
+            final Method setter = type.getMethod("set" + suffix, propertyType);
+            return Modifier.isStatic(setter.getModifiers()) ? null : setter;
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> primitiveGetterInterface(final Class<?> propertyType) {
+        if (propertyType == int.class) {
+            return ToIntFunction.class;
+        } else if (propertyType == long.class) {
+            return ToLongFunction.class;
+        }
+        return ToDoubleFunction.class;
+    }
+
+    private static Class<?> primitiveSetterInterface(final Class<?> propertyType) {
+        if (propertyType == int.class) {
+            return ObjIntConsumer.class;
+        } else if (propertyType == long.class) {
+            return ObjLongConsumer.class;
+        }
+        return ObjDoubleConsumer.class;
+    }
+
+    // Spreads an Object[] over the canonical constructor's parameters, in a class spun around the handle
+    @SuppressWarnings("unchecked")
+    private static <T> Function<Object, T> canonicalConstructor(final LambdaMetafactoryWrapper wrapper,
+                                                                final Class<T> type, final Class<?>[] propertyTypes) {
+        final Constructor<T> constructor;
+        final Method apply;
+        try {
+            constructor = type.getDeclaredConstructor(propertyTypes);
+            apply = Function.class.getMethod("apply", Object.class);
+        } catch (final NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+        final MethodHandle spread = wrapper.getUnreflectedImplementation(constructor)
+                .asSpreader(Object[].class, propertyTypes.length);
+        return wrapper.wrapMethods(Function.class, Map.of(apply, spread));
+    }
+
+    public Class<T> type() {
+        return type;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * @return -1 if there's no such property
+     */
+    public int indexOf(final String name) {
+        final Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public Class<?> propertyType(final int index) {
+        return propertyTypes[index];
+    }
+
+    public boolean isWritable(final int index) {
+        return setters[index] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Function<T, Object> getter(final int index) {
+        return (Function<T, Object>) getters[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public BiConsumer<T, Object> setter(final int index) {
+        if (setters[index] == null) {
+            throw new IllegalArgumentException(names.get(index) + " is read-only");
+        }
+        return (BiConsumer<T, Object>) setters[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public ToIntFunction<T> intGetter(final int index) {
+        return (ToIntFunction<T>) primitiveGetter(index, int.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ToLongFunction<T> longGetter(final int index) {
+        return (ToLongFunction<T>) primitiveGetter(index, long.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ToDoubleFunction<T> doubleGetter(final int index) {
+        return (ToDoubleFunction<T>) primitiveGetter(index, double.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ObjIntConsumer<T> intSetter(final int index) {
+        return (ObjIntConsumer<T>) primitiveSetter(index, int.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ObjLongConsumer<T> longSetter(final int index) {
+        return (ObjLongConsumer<T>) primitiveSetter(index, long.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ObjDoubleConsumer<T> doubleSetter(final int index) {
+        return (ObjDoubleConsumer<T>) primitiveSetter(index, double.class);
+    }
+
+    private Object primitiveGetter(final int index, final Class<?> expectedType) {
+        checkType(index, expectedType);
+        return primitiveGetters[index];
+    }
+
+    private Object primitiveSetter(final int index, final Class<?> expectedType) {
+        checkType(index, expectedType);
+        if (primitiveSetters[index] == null) {
+            throw new IllegalArgumentException(names.get(index) + " is read-only");
+        }
+        return primitiveSetters[index];
+    }
+
+    private void checkType(final int index, final Class<?> expectedType) {
+        if (propertyTypes[index] != expectedType) {
+            throw new IllegalArgumentException(names.get(index) + " is a " + propertyTypes[index] + ", not a "
+                    + expectedType);
+        }
+    }
+
+    /**
+     * Creates an instance from values in property order: through the canonical constructor for a record, or the
+     * public no-arg constructor and then every setter for a bean.
+     *
+     * @throws UnsupportedOperationException if a bean has no public no-arg constructor or a read-only property
+     */
+    public T newInstance(final Object... values) {
+        if (values.length != names.size()) {
+            throw new IllegalArgumentException("Expected " + names.size() + " values, but got " + values.length);
+        }
+        if (allArgsConstructor != null) {
+            return allArgsConstructor.apply(values);
+        }
+        if (noArgConstructor == null) {
+            throw new UnsupportedOperationException(type + " has no public no-arg constructor");
+        }
+        for (int i = 0; i < setters.length; i++) {
+            if (setters[i] == null) {
+                throw new UnsupportedOperationException(names.get(i) + " is read-only");
+            }
+        }
+        final T instance = noArgConstructor.get();
+        for (int i = 0; i < setters.length; i++) {
+            setter(i).accept(instance, values[i]);
+        }
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyAccessors[" + type.getName() + ": " + names + "]";
+    }
+}
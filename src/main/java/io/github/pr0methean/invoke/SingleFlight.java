@@ -0,0 +1,107 @@
+package io.github.pr0methean.invoke;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Populates a cache without running the mapping function under any lock. The first thread to miss on a key
+ * computes it, and concurrent requests for that key wait on its future. Requests for other keys, including those
+ * that hash to the same bin, never block behind it, and waiting parks rather than pinning a virtual thread's
+ * carrier.
+ */
+final class SingleFlight {
+    private record Flight(Thread owner, CompletableFuture<Object> future) {}
+
+    // Identifies a key within one particular cache, since unrelated caches may share keys
+    private record FlightKey(Object cache, Object key) {
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof FlightKey other && other.cache == cache && other.key.equals(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(cache) + key.hashCode();
+        }
+    }
+
+    private static final ConcurrentHashMap<FlightKey, Flight> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private SingleFlight() {}
+
+    /**
+     * A {@link ConcurrentHashMap} whose {@code computeIfAbsent} runs the mapping function outside the bin lock.
+     */
+    static final class ConcurrentCache<K, V> extends ConcurrentHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+            return SingleFlight.computeIfAbsent(this, key, mappingFunction);
+        }
+    }
+
+    static <K, V> V computeIfAbsent(final ConcurrentMap<K, V> map, final K key,
+                                    final Function<? super K, ? extends V> mappingFunction) {
+        final V existing = map.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return load(map, key, map::get, k -> {
+            final V value = mappingFunction.apply(k);
+            if (value != null) {
+                final V previous = map.putIfAbsent(k, value);
+                if (previous != null) {
+                    return previous;
+                }
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Runs {@code loader}, which stores its own result, unless a flight for the same key in {@code cache} is already
+     * running, in which case this waits for that flight's result instead. {@code lookup} finds a result that a flight
+     * which finished after the caller's own lookup has already stored.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> V load(final Object cache, final K key, final Function<? super K, ? extends V> lookup,
+                         final Function<? super K, ? extends V> loader) {
+        final FlightKey flightKey = new FlightKey(cache, key);
+        final Flight flight = new Flight(Thread.currentThread(), new CompletableFuture<>());
+        final Flight racing = IN_FLIGHT.putIfAbsent(flightKey, flight);
+        if (racing != null) {
+            if (racing.owner == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive update for " + key);
+            }
+            try {
+                return (V) racing.future.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            // Another flight for this key may have finished after the first check
+            V value = lookup.apply(key);
+            if (value == null) {
+                value = loader.apply(key);
+            }
+            flight.future.complete(value);
+            return value;
+        } catch (final Throwable t) {
+            flight.future.completeExceptionally(t);
+            throw t;
+        } finally {
+            IN_FLIGHT.remove(flightKey, flight);
+        }
+    }
+}
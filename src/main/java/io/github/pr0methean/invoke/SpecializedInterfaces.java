@@ -0,0 +1,159 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Picks the functional interface that lets a lambda be called without boxing. Since the wrapper instantiates the
+ * interface method with the implementation's own type, primitive parameters must match exactly; only a primitive
+ * return can be boxed.
+ */
+final class SpecializedInterfaces {
+    private record Candidate(Class<?> functionalInterface, MethodType methodType) {}
+
+    record Selection(Class<?> functionalInterface, int boxingConversions) {}
+
+    private static final String GENERATED_PREFIX = "io/github/pr0methean/invoke/PrimitiveFunction$";
+    private static final String GENERATED_METHOD_NAME = "apply";
+
+    // Most specific first, so that ties go to the interface with the narrowest contract
+    private static final List<Candidate> CANDIDATES = Arrays.stream(new Class<?>[]{
+            Runnable.class,
+            BooleanSupplier.class, IntSupplier.class, LongSupplier.class, DoubleSupplier.class, Supplier.class,
+            IntConsumer.class, LongConsumer.class, DoubleConsumer.class, Consumer.class,
+            ObjIntConsumer.class, ObjLongConsumer.class, ObjDoubleConsumer.class, BiConsumer.class,
+            IntPredicate.class, LongPredicate.class, DoublePredicate.class, Predicate.class, BiPredicate.class,
+            IntUnaryOperator.class, LongUnaryOperator.class, DoubleUnaryOperator.class,
+            IntToLongFunction.class, IntToDoubleFunction.class, LongToIntFunction.class,
+            LongToDoubleFunction.class, DoubleToIntFunction.class, DoubleToLongFunction.class,
+            IntBinaryOperator.class, LongBinaryOperator.class, DoubleBinaryOperator.class,
+            IntFunction.class, LongFunction.class, DoubleFunction.class,
+            ToIntFunction.class, ToLongFunction.class, ToDoubleFunction.class,
+            ToIntBiFunction.class, ToLongBiFunction.class, ToDoubleBiFunction.class,
+            Function.class, BiFunction.class
+    }).map(SpecializedInterfaces::candidate).toList();
+
+    // Keyed by erased types, which only refer to bootstrap classes, so this can't pin a class loader
+    private static final ConcurrentHashMap<MethodType, Selection> SELECTIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<MethodType, Class<?>> GENERATED = new ConcurrentHashMap<>();
+
+    private SpecializedInterfaces() {}
+
+    private static Candidate candidate(final Class<?> functionalInterface) {
+        final Method method = Arrays.stream(functionalInterface.getMethods())
+                .filter(m -> Modifier.isAbstract(m.getModifiers()))
+                .findFirst()
+                .orElseThrow();
+        return new Candidate(functionalInterface,
+                MethodType.methodType(method.getReturnType(), method.getParameterTypes()));
+    }
+
+    /**
+     * @param invocationType the type of the implementation after its captured parameters are bound
+     * @return null if no standard interface fits and {@code allowGenerated} is false
+     */
+    static Selection select(final MethodType invocationType, final boolean allowGenerated) {
+        final MethodType erased = invocationType.erase();
+        final Selection standard = SELECTIONS.computeIfAbsent(erased, SpecializedInterfaces::selectStandard);
+        if (standard.boxingConversions == 0 || !allowGenerated) {
+            return standard.functionalInterface == null ? null : standard;
+        }
+        return new Selection(GENERATED.computeIfAbsent(erased, SpecializedInterfaces::generate), 0);
+    }
+
+    private static Selection selectStandard(final MethodType erased) {
+        Selection best = new Selection(null, Integer.MAX_VALUE);
+        for (final Candidate candidate : CANDIDATES) {
+            final int boxingConversions = boxingConversions(candidate.methodType, erased);
+            if (boxingConversions >= 0 && boxingConversions < best.boxingConversions) {
+                best = new Selection(candidate.functionalInterface, boxingConversions);
+            }
+        }
+        return best;
+    }
+
+    // -1 if the candidate can't implement the type at all
+    private static int boxingConversions(final MethodType candidate, final MethodType erased) {
+        if (!candidate.parameterList().equals(erased.parameterList())) {
+            return -1;
+        }
+        final Class<?> candidateReturn = candidate.returnType();
+        final Class<?> implReturn = erased.returnType();
+        if (candidateReturn == implReturn) {
+            return 0;
+        }
+        return candidateReturn == Object.class && implReturn != void.class ? 1 : -1;
+    }
+
+    private static char mangle(final Class<?> type) {
+        return type.isPrimitive() ? type.descriptorString().charAt(0) : 'L';
+    }
+
+    private static Class<?> generate(final MethodType erased) {
+        final StringBuilder name = new StringBuilder(GENERATED_PREFIX);
+        for (final Class<?> parameterType : erased.parameterList()) {
+            name.append(mangle(parameterType));
+        }
+        name.append('_').append(mangle(erased.returnType()));
+        try {
+            return MethodHandles.lookup().defineClass(interfaceClassFile(name.toString(),
+                    erased.toMethodDescriptorString()));
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] interfaceClassFile(final String internalName, final String methodDescriptor) {
+        final ClassFileWriter writer = new ClassFileWriter(
+                ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_INTERFACE | ClassFileWriter.ACC_ABSTRACT,
+                internalName, "java/lang/Object");
+        writer.addAbstractMethod(ClassFileWriter.ACC_PUBLIC, GENERATED_METHOD_NAME, methodDescriptor);
+        return writer.toByteArray();
+    }
+}
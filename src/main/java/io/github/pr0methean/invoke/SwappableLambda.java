@@ -0,0 +1,62 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Executable;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Returned by {@link LambdaMetafactoryWrapper#wrapSwappable}: a functional-interface instance that never changes,
+ * backed by a {@link MutableCallSite} whose target does. Each swap deoptimizes the compiled callers of the instance,
+ * so it suits targets that change rarely, such as reloaded plugins or feature flags.
+ */
+public final class SwappableLambda<T> {
+    private final LambdaMetafactoryWrapper wrapper;
+    private final MutableCallSite callSite;
+    private final T instance;
+
+    SwappableLambda(final LambdaMetafactoryWrapper wrapper, final MutableCallSite callSite, final T instance) {
+        this.wrapper = wrapper;
+        this.callSite = callSite;
+        this.instance = instance;
+    }
+
+    static MethodHandle adapt(final MethodHandle target, final MethodType type) {
+        try {
+            return requireNonNull(target).asType(type);
+        } catch (final WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Can't adapt " + target + " to " + type, e);
+        }
+    }
+
+    public T instance() {
+        return instance;
+    }
+
+    public MethodHandle target() {
+        return callSite.getTarget();
+    }
+
+    public void swap(final MethodHandle target) {
+        callSite.setTarget(adapt(target, callSite.type()));
+        MutableCallSite.syncAll(new MutableCallSite[]{callSite});
+    }
+
+    public void swap(final Executable implementation, final Object... capturedParameters) {
+        swap(wrapper.bindImplementation(implementation, Arrays.asList(capturedParameters)));
+    }
+
+    /**
+     * Calls {@code target} until {@code switchPoint} is invalidated, and {@code fallback} thereafter. Invalidating one
+     * {@link SwitchPoint} redirects every instance guarded by it at once.
+     */
+    public void swap(final MethodHandle target, final SwitchPoint switchPoint, final MethodHandle fallback) {
+        final MethodType type = callSite.type();
+        swap(switchPoint.guardWithTest(adapt(target, type), adapt(fallback, type)));
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cold tier of {@link LambdaMetafactoryWrapper#wrapTiered}: an instance from
+ * {@link MethodHandleProxies#asInterfaceInstance} that calls the unreflected implementation through a
+ * {@link MutableCallSite}, and counts calls until it's worth spinning a lambda class. What class the JDK uses for that
+ * instance varies between releases; {@link MethodHandleProxies#isWrapperInstance} is the only reliable test for it. After promotion the call site targets the spun lambda, and the wrapper hands out the spun lambda itself.
+ * Cache managers key these by implementation, so the implementation is looked up again on promotion rather than held.
+ */
+final class TieredLambda<T> implements Supplier<T> {
+    private static final Logger LOG = Logger.getLogger(TieredLambda.class.getSimpleName());
+    private static final MethodHandle COUNT_INVOCATION;
+
+    static {
+        try {
+            COUNT_INVOCATION = MethodHandles.lookup().findVirtual(TieredLambda.class, "countInvocation",
+                    MethodType.methodType(void.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final LambdaMetafactoryWrapper wrapper;
+    private final Class<?> declaringClass;
+    private final String name; // null for a constructor
+    private final Class<?>[] parameterTypes;
+    private final LambdaMetafactoryWrapper.Parameters<T> parameters;
+    private final int promotionThreshold;
+    private final LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor descriptor;
+    private final MutableCallSite callSite;
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final T coldInstance;
+    private volatile T promoted;
+
+    @SuppressWarnings("unchecked")
+    TieredLambda(final LambdaMetafactoryWrapper wrapper, final Executable implementation,
+                 final LambdaMetafactoryWrapper.Parameters<T> parameters, final MethodHandle unreflected,
+                 final List<Object> capturedParameters,
+                 final LambdaMetafactoryWrapper.FunctionalInterfaceDescriptor descriptor,
+                 final int promotionThreshold) {
+        this.wrapper = wrapper;
+        declaringClass = implementation.getDeclaringClass();
+        name = implementation instanceof Constructor<?> ? null : implementation.getName();
+        parameterTypes = implementation.getParameterTypes();
+        this.parameters = parameters;
+        this.descriptor = descriptor;
+        this.promotionThreshold = promotionThreshold;
+        final MethodHandle coldTarget = MethodHandles.insertArguments(unreflected.asFixedArity(), 0,
+                        capturedParameters.toArray())
+                .asType(descriptor.methodType());
+        callSite = new MutableCallSite(MethodHandles.foldArguments(coldTarget, COUNT_INVOCATION.bindTo(this)));
+        coldInstance = (T) MethodHandleProxies.asInterfaceInstance(parameters.functionalInterface(),
+                callSite.dynamicInvoker());
+    }
+
+    @Override
+    public T get() {
+        final T promoted = this.promoted;
+        return promoted == null ? coldInstance : promoted;
+    }
+
+    @SuppressWarnings("unused") // Called through COUNT_INVOCATION
+    private void countInvocation() {
+        if (invocations.incrementAndGet() == promotionThreshold) {
+            final Executable implementation;
+            try {
+                implementation = name == null ? declaringClass.getDeclaredConstructor(parameterTypes)
+                        : declaringClass.getDeclaredMethod(name, parameterTypes);
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            wrapper.wrapAsync(implementation, parameters).whenComplete((spun, failure) -> {
+                if (failure != null) {
+                    LOG.log(Level.WARNING, failure, () -> "Failed to promote " + implementation
+                            + "; it will stay on the MethodHandle tier");
+                } else {
+                    promote(spun);
+                }
+            });
+        }
+    }
+
+    private void promote(final T spun) {
+        final MethodHandle hotTarget;
+        try {
+            hotTarget = wrapper.lookup.findVirtual(parameters.functionalInterface(),
+                    descriptor.methodName(), descriptor.methodType()).bindTo(spun);
+        } catch (final ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+        callSite.setTarget(hotTarget);
+        MutableCallSite.syncAll(new MutableCallSite[]{callSite});
+        promoted = spun;
+    }
+}
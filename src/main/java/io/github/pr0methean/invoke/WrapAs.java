@@ -0,0 +1,18 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks the processor in the {@code processor} module to generate, at compile time, factories that implement the given
+ * functional interfaces with the annotated method or constructor. {@link LambdaMetafactoryWrapper#wrap} returns those
+ * instead of spinning a class, when the requested parameters match and don't ask for a serializable lambda. The
+ * annotated member and its enclosing classes must not be private.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.METHOD, ElementType.CONSTRUCTOR})
+public @interface WrapAs {
+    Class<?>[] value();
+}
@@ -0,0 +1,52 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+    @Test
+    public void testFrequentKeySurvivesScan() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(2, -1, System::nanoTime);
+        for (int i = 0; i < 5; i++) {
+            cache.computeIfAbsent(0, String::valueOf);
+        }
+        cache.computeIfAbsent(1, String::valueOf);
+        for (int i = 2; i < 100; i++) {
+            cache.computeIfAbsent(i, String::valueOf);
+        }
+        long misses = cache.missCount();
+        cache.computeIfAbsent(0, String::valueOf);
+        assertEquals(misses, cache.missCount());
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void testNewKeyIsReusedBeforeAdmission() {
+        BoundedCache<Integer, Object> cache = new BoundedCache<>(2, -1, System::nanoTime);
+        for (int i = 0; i < 5; i++) {
+            cache.computeIfAbsent(0, k -> new Object());
+        }
+        cache.computeIfAbsent(1, k -> new Object());
+        Object first = cache.computeIfAbsent(2, k -> new Object());
+        long misses = cache.missCount();
+        assertSame(first, cache.computeIfAbsent(2, k -> new Object()));
+        assertEquals(misses, cache.missCount());
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        AtomicLong time = new AtomicLong();
+        BoundedCache<Integer, Object> cache = new BoundedCache<>(10, 100, time::get);
+        Object first = cache.computeIfAbsent(1, k -> new Object());
+        time.set(50);
+        assertSame(first, cache.computeIfAbsent(1, k -> new Object()));
+        time.set(149);
+        assertSame(first, cache.computeIfAbsent(1, k -> new Object()));
+        time.set(249);
+        assertNotSame(first, cache.computeIfAbsent(1, k -> new Object()));
+        assertEquals(1, cache.evictionCount());
+    }
+}
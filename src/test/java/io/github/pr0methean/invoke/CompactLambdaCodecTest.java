@@ -0,0 +1,97 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactLambdaCodecTest {
+    static String greet(String name) {
+        return "Hello, " + name;
+    }
+
+    static int add(int a, int b) {
+        return a + b;
+    }
+
+    private static Supplier<String> greeter(String name) throws NoSuchMethodException {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup()).wrap(
+                CompactLambdaCodecTest.class.getDeclaredMethod("greet", String.class),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .serializable(true)
+                        .addCapturedParameter(name)
+                        .build());
+    }
+
+    private static IntSupplier adder(int a, int b) throws NoSuchMethodException {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup()).wrap(
+                CompactLambdaCodecTest.class.getDeclaredMethod("add", int.class, int.class),
+                LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                        .serializable(true)
+                        .addCapturedParameter(a)
+                        .addCapturedParameter(b)
+                        .build());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompactLambdaCodec.Writer writer = CompactLambdaCodec.newWriter(bytes)) {
+            writer.write(greeter("Alice"));
+            writer.write(adder(2, 3));
+            writer.write(greeter("Bob"));
+        }
+        try (CompactLambdaCodec.Reader reader = CompactLambdaCodec.newReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals("Hello, Alice", ((Supplier<?>) reader.read()).get());
+            assertEquals(5, ((IntSupplier) reader.read()).getAsInt());
+            assertEquals("Hello, Bob", ((Supplier<?>) reader.read()).get());
+            assertThrows(EOFException.class, reader::read);
+        }
+    }
+
+    @Test
+    public void testStreamingIsSmallerThanStandardSerialization() throws Exception {
+        List<Object> lambdas = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lambdas.add(adder(i, i));
+        }
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        try (CompactLambdaCodec.Writer writer = CompactLambdaCodec.newWriter(compact)) {
+            writer.writeAll(lambdas);
+        }
+        ByteArrayOutputStream standard = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(standard)) {
+            for (Object lambda : lambdas) {
+                out.writeObject(lambda);
+            }
+        }
+        assertTrue(compact.size() < standard.size(), compact.size() + " >= " + standard.size());
+        try (CompactLambdaCodec.Reader reader = CompactLambdaCodec.newReader(new ByteArrayInputStream(compact.toByteArray()))) {
+            int[] sums = reader.readAll().mapToInt(lambda -> ((IntSupplier) lambda).getAsInt()).toArray();
+            assertEquals(100, sums.length);
+            for (int i = 0; i < sums.length; i++) {
+                assertEquals(2 * i, sums[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsOtherObjects() throws IOException {
+        try (CompactLambdaCodec.Writer writer = CompactLambdaCodec.newWriter(new ByteArrayOutputStream())) {
+            assertThrows(NotSerializableException.class, () -> writer.write("not a lambda"));
+            assertThrows(NotSerializableException.class, () -> writer.write((Supplier<String> & Serializable) () -> "javac"));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentWeakKeyMapTest {
+    @Test
+    public void testEqualsSemantics() {
+        ConcurrentWeakKeyMap<String, Integer> map = new ConcurrentWeakKeyMap<>();
+        String key = new String("key");
+        map.put(key, 1);
+        assertEquals(1, map.get(new String("key")));
+        assertSame(1, map.computeIfAbsent(new String("key"), k -> 2));
+        assertEquals(2, map.computeIfAbsent("other", k -> 2));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testExpungesCollectedKeys() throws InterruptedException {
+        ConcurrentWeakKeyMap<Object, String> map = new ConcurrentWeakKeyMap<>();
+        Object key = new Object();
+        WeakReference<Object> keyRef = new WeakReference<>(key);
+        map.put(key, "value");
+        //noinspection UnusedAssignment
+        key = null;
+        for (int i = 0; i < 100 && (keyRef.get() != null || map.expungeStaleEntries() == 0); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(1, map.expungedCount());
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LambdaBootstrapsTest {
+    public static String greet(String greeting, Object name) {
+        return greeting + ", " + name;
+    }
+
+    private static MethodHandle greetHandle() throws ReflectiveOperationException {
+        return MethodHandles.lookup().findStatic(LambdaBootstrapsTest.class, "greet",
+                MethodType.methodType(String.class, String.class, Object.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMetafactorySharesClassWithWrap() throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        CallSite callSite = LambdaBootstraps.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class, Object.class), greetHandle());
+        Function<Object, String> linked = (Function<Object, String>) callSite.dynamicInvoker().invoke("Hello");
+        assertEquals("Hello, world", linked.apply("world"));
+        Function<Object, String> wrapped = LambdaMetafactoryWrapper.getDefaultInstance().wrap(
+                LambdaBootstrapsTest.class.getMethod("greet", String.class, Object.class),
+                LambdaMetafactoryWrapper.Parameters.<Function<Object, String>>builder(Function.class)
+                        .addCapturedParameter("Hi")
+                        .build());
+        assertSame(linked.getClass(), wrapped.getClass());
+    }
+
+    private static String shout(String message) {
+        return message.toUpperCase();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMetafactorySpinsWithCallersLookup() throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle shout = lookup.findStatic(LambdaBootstrapsTest.class, "shout",
+                MethodType.methodType(String.class, String.class));
+        CallSite callSite = LambdaBootstraps.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                shout);
+        Function<String, String> linked = (Function<String, String>) callSite.dynamicInvoker().invoke();
+        assertEquals("HELLO", linked.apply("hello"));
+        // LambdaMetafactory names the class after the lookup it was given
+        assertTrue(linked.getClass().getName().startsWith(LambdaBootstrapsTest.class.getName() + "$$Lambda"));
+    }
+
+    @Test
+    public void testAltMetafactory() throws Throwable {
+        CallSite callSite = LambdaBootstraps.altMetafactory(MethodHandles.lookup(), "get",
+                MethodType.methodType(Supplier.class, String.class, Object.class), greetHandle(),
+                LambdaMetafactory.FLAG_MARKERS, 1, Serializable.class);
+        Object linked = callSite.dynamicInvoker().invoke("Hello", "world");
+        assertEquals("Hello, world", ((Supplier<?>) linked).get());
+        assertTrue(linked instanceof Serializable);
+        assertThrows(IllegalArgumentException.class, () -> LambdaBootstraps.altMetafactory(MethodHandles.lookup(),
+                "get", MethodType.methodType(Supplier.class), greetHandle(), LambdaMetafactory.FLAG_MARKERS));
+    }
+
+    @Test
+    public void testLambda() throws Throwable {
+        Supplier<?> constant = (Supplier<?>) LambdaBootstraps.lambda(MethodHandles.lookup(), "_", Supplier.class,
+                greetHandle(), "Hello", "world");
+        assertEquals("Hello, world", constant.get());
+        assertSame(constant, LambdaBootstraps.lambda(MethodHandles.lookup(), "_", Supplier.class, greetHandle(),
+                "Hello", "world"));
+    }
+
+    @Test
+    public void testNonDirectHandle() throws Throwable {
+        MethodHandle bound = MethodHandles.insertArguments(greetHandle(), 0, "Hello");
+        Supplier<?> constant = (Supplier<?>) LambdaBootstraps.lambda(MethodHandles.lookup(), "_", Supplier.class,
+                bound, "world");
+        assertEquals("Hello, world", constant.get());
+        CallSite callSite = LambdaBootstraps.metafactory(MethodHandles.lookup(), "get",
+                MethodType.methodType(Supplier.class), MethodHandles.insertArguments(bound, 0, "world"));
+        assertEquals("Hello, world", ((Supplier<?>) callSite.dynamicInvoker().invoke()).get());
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.pr0methean.invoke;
+
+public class LambdaMetafactoryBoundedCacheTest extends LambdaMetafactoryWrapperTest {
+    // Small enough that the inherited tests evict entries
+    private static final LambdaMetafactoryBoundedCacheManager CACHE_MANAGER = LambdaMetafactoryBoundedCacheManager.builder()
+            .maximumDescriptors(2)
+            .maximumUnreflected(2)
+            .maximumFactories(2)
+            .maximumWrappers(2)
+            .maximumDeserialized(2)
+            .maximumMethods(2)
+            .build();
+
+    @Override
+    protected LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(getLookup(), CACHE_MANAGER);
+    }
+}
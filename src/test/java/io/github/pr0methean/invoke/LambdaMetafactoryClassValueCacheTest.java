@@ -0,0 +1,92 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LambdaMetafactoryClassValueCacheTest extends LambdaMetafactoryWrapperTest {
+    @Override
+    protected LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(getLookup(), LambdaMetafactoryClassValueCacheManager.getInstance());
+    }
+
+    @Test
+    public void testClassLoaderCanBeUnloaded() throws Exception {
+        WeakReference<ClassLoader> loader = wrapInIsolatedLoader();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loader.get());
+    }
+
+    static String describe(Object captured) {
+        return captured.getClass().getSimpleName();
+    }
+
+    @Test
+    public void testChildLoaderCanBeUnloadedWhenOnlyCaptured() throws Exception {
+        WeakReference<ClassLoader> loader = captureFromChildLoader();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loader.get());
+    }
+
+    // The implementation is in this class's loader, but a captured value comes from a child loader, as with a plugin
+    private static WeakReference<ClassLoader> captureFromChildLoader() throws Exception {
+        URL classes = UnloadableTarget.class.getProtectionDomain().getCodeSource().getLocation();
+        String name = UnloadableTarget.class.getName();
+        URLClassLoader loader = new URLClassLoader(new URL[]{classes},
+                LambdaMetafactoryClassValueCacheTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+                if (!className.equals(name)) {
+                    return super.loadClass(className, resolve);
+                }
+                synchronized (getClassLoadingLock(className)) {
+                    Class<?> loaded = findLoadedClass(className);
+                    return loaded != null ? loaded : findClass(className);
+                }
+            }
+        };
+        Class<?> target = loader.loadClass(name);
+        assertNotSame(UnloadableTarget.class, target);
+        LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(MethodHandles.lookup(),
+                LambdaMetafactoryClassValueCacheManager.getInstance());
+        Method describe = LambdaMetafactoryClassValueCacheTest.class.getDeclaredMethod("describe", Object.class);
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(target.getConstructor().newInstance())
+                .build();
+        Supplier<String> supplier = wrapper.wrap(describe, parameters);
+        assertEquals("UnloadableTarget", supplier.get());
+        assertSame(supplier, wrapper.wrap(describe, parameters));
+        loader.close();
+        return new WeakReference<>(loader);
+    }
+
+    private static WeakReference<ClassLoader> wrapInIsolatedLoader() throws Exception {
+        URL classes = UnloadableTarget.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader loader = new URLClassLoader(new URL[]{classes}, ClassLoader.getPlatformClassLoader());
+        Class<?> target = loader.loadClass(UnloadableTarget.class.getName());
+        assertNotSame(UnloadableTarget.class, target);
+        LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(
+                (MethodHandles.Lookup) target.getMethod("lookup").invoke(null),
+                LambdaMetafactoryClassValueCacheManager.getInstance());
+        Method greet = target.getMethod("greet");
+        Supplier<String> supplier = wrapper.wrap(greet, Supplier.class);
+        assertEquals("Hello", supplier.get());
+        assertSame(supplier, wrapper.wrap(greet, Supplier.class));
+        loader.close();
+        return new WeakReference<>(loader);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.pr0methean.invoke;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Relies on the metrics system property that the build sets for tests
+class LambdaMetafactoryMetricsTest {
+    private static String getGreeting() {
+        return "Hello World";
+    }
+
+    @Test
+    public void testCountsHitsMissesAndSpins() throws Exception {
+        LambdaMetafactoryMetrics metrics = LambdaMetafactoryMetrics.getInstance();
+        assertTrue(metrics.isEnabled());
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new ObjectName(LambdaMetafactoryMetrics.OBJECT_NAME)));
+        long misses = metrics.getMissCounts().get("WRAPPER");
+        long hits = metrics.getHitCounts().get("WRAPPER");
+        long spins = metrics.getSpinCount();
+        LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(MethodHandles.lookup());
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build();
+        wrapper.wrap(LambdaMetafactoryMetricsTest.class.getDeclaredMethod("getGreeting"), parameters);
+        wrapper.wrap(LambdaMetafactoryMetricsTest.class.getDeclaredMethod("getGreeting"), parameters);
+        assertEquals(misses + 1, metrics.getMissCounts().get("WRAPPER"));
+        assertEquals(hits + 1, metrics.getHitCounts().get("WRAPPER"));
+        assertEquals(spins + 1, metrics.getSpinCount());
+        assertTrue(metrics.getCachedEntriesPerClassLoader().values().stream().anyMatch(count -> count > 0));
+    }
+
+    @Test
+    public void testCountsHiddenClassSpinsAndOtherManagers() throws Exception {
+        LambdaMetafactoryMetrics metrics = LambdaMetafactoryMetrics.getInstance();
+        long spins = metrics.getSpinCount();
+        LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(MethodHandles.lookup(),
+                LambdaMetafactoryBoundedCacheManager.builder().build());
+        // Not a direct handle, so it's forwarded to from a spun hidden class rather than through LambdaMetafactory
+        Supplier<Object> supplier = wrapper.wrapMethodHandle(MethodHandles.constant(Object.class, "Hello World"),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<Object>>builder(Supplier.class).build());
+        assertEquals("Hello World", supplier.get());
+        assertEquals(spins + 1, metrics.getSpinCount());
+        wrapper.wrap(LambdaMetafactoryMetricsTest.class.getDeclaredMethod("getGreeting"), Supplier.class);
+        assertTrue(metrics.getCachedEntriesPerClassLoader().entrySet().stream().anyMatch(entry ->
+                entry.getKey().startsWith("LambdaMetafactoryBoundedCacheManager: ") && entry.getValue() > 0));
+    }
+
+    @Test
+    public void testSpinEvent() throws Exception {
+        Path dump = Files.createTempFile("lambda-spin", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.github.pr0methean.invoke.LambdaSpin");
+            recording.start();
+            LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(MethodHandles.lookup(),
+                    LambdaMetafactoryNoopCacheManager.getInstance());
+            wrapper.wrap(LambdaMetafactoryMetricsTest.class.getDeclaredMethod("getGreeting"), Supplier.class);
+            wrapper.wrapMethodHandle(MethodHandles.constant(Object.class, "Hello World"),
+                    LambdaMetafactoryWrapper.Parameters.<Supplier<Object>>builder(Supplier.class).build());
+            recording.stop();
+            recording.dump(dump);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            assertTrue(events.stream().anyMatch(event ->
+                    event.getString("implementation").endsWith("LambdaMetafactoryMetricsTest.getGreeting()String")
+                            && event.getClass("functionalInterface").getName().equals(Supplier.class.getName())));
+            assertTrue(events.stream().anyMatch(event ->
+                    event.getString("implementation").contains("$$Spun")
+                            && event.getClass("functionalInterface").getName().equals(Supplier.class.getName())));
+        } finally {
+            deleteQuietly(dump);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Best effort
+        }
+    }
+}
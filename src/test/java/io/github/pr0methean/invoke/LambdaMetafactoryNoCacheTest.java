@@ -5,4 +5,9 @@ public class LambdaMetafactoryNoCacheTest extends LambdaMetafactoryWrapperTest {
     protected LambdaMetafactoryWrapper createWrapper() {
         return new LambdaMetafactoryWrapper(getLookup(), LambdaMetafactoryNoopCacheManager.getInstance());
     }
+
+    @Override
+    protected boolean cachesWrappers() {
+        return false;
+    }
 }
@@ -0,0 +1,192 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LambdaMetafactoryPersistentCacheTest extends LambdaMetafactoryWrapperTest {
+    private static final LambdaMetafactoryPersistentCacheManager CACHE_MANAGER;
+
+    static {
+        try {
+            Path file = Files.createTempFile("lambdas", ".bin");
+            file.toFile().deleteOnExit();
+            CACHE_MANAGER = LambdaMetafactoryPersistentCacheManager.open(file,
+                    LambdaMetafactoryNoopCacheManager.getInstance());
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    protected LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(getLookup(), CACHE_MANAGER);
+    }
+
+    @Override
+    protected boolean cachesWrappers() {
+        return false;
+    }
+
+    static String echo(String s) {
+        return s;
+    }
+
+    @Test
+    public void testSaveAndWarmUp() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            LambdaMetafactoryPersistentCacheManager first = LambdaMetafactoryPersistentCacheManager.open(file);
+            assertEquals(0, first.getLoadedEntryCount());
+            LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(getLookup(), first);
+            Function<String, String> echo = wrapper.wrap(
+                    LambdaMetafactoryPersistentCacheTest.class.getDeclaredMethod("echo", String.class),
+                    LambdaMetafactoryWrapper.Parameters.<Function<String, String>>builder(Function.class).build());
+            assertEquals("hi", echo.apply("hi"));
+            Supplier<String> captured = wrapper.wrap(
+                    LambdaMetafactoryPersistentCacheTest.class.getDeclaredMethod("echo", String.class),
+                    LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                            .addCapturedParameter("there")
+                            .build());
+            assertEquals("there", captured.get());
+            first.save();
+
+            LambdaMetafactoryPersistentCacheManager second = LambdaMetafactoryPersistentCacheManager.open(file,
+                    LambdaMetafactoryNoopCacheManager.getInstance());
+            assertEquals(2, second.getLoadedEntryCount());
+            assertEquals(2, second.warmUp(new LambdaMetafactoryWrapper(getLookup(), second)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testChangedClassesAreSkipped() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            LambdaMetafactoryPersistentCacheManager.writeEntries(file, List.of(
+                    new LambdaMetafactoryPersistentCacheManager.Entry(
+                            LambdaMetafactoryPersistentCacheTest.class.getName(), "echo",
+                            "(Ljava/lang/String;)Ljava/lang/String;", Function.class.getName(), false, List.of(),
+                            "()V", List.of(), 12345, 67890),
+                    new LambdaMetafactoryPersistentCacheManager.Entry(
+                            "no.such.Class", "echo", "()V", Runnable.class.getName(), false, List.of(),
+                            "()V", List.of(), 0, 0)));
+            LambdaMetafactoryPersistentCacheManager manager = LambdaMetafactoryPersistentCacheManager.open(file);
+            assertEquals(2, manager.getLoadedEntryCount());
+            assertEquals(0, manager.warmUp(new LambdaMetafactoryWrapper(getLookup(), manager)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static String shout(String s) {
+        return s.toUpperCase();
+    }
+
+    @Test
+    public void testRecordsOnlySpunLambdas() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            Method shout = LambdaMetafactoryPersistentCacheTest.class.getDeclaredMethod("shout", String.class);
+            LambdaMetafactoryPersistentCacheManager manager = LambdaMetafactoryPersistentCacheManager.open(file,
+                    LambdaMetafactoryNoopCacheManager.getInstance());
+            LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(getLookup(), manager);
+            Function<String, String> profiled = wrapper.wrap(shout,
+                    LambdaMetafactoryWrapper.Parameters.<Function<String, String>>builder(Function.class)
+                            .profiled(true)
+                            .build());
+            assertEquals("HI", profiled.apply("hi"));
+            ToIntFunction<String> precompiled = wrapper.wrap(
+                    PrecompiledLambdaFactoryTest.Annotated.class.getDeclaredMethod("length", String.class),
+                    ToIntFunction.class);
+            assertEquals(2, precompiled.applyAsInt("hi"));
+            manager.save();
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+            assertEquals("HI", wrapper.wrap(shout, Function.class).apply("hi"));
+            manager.save();
+            assertEquals(1, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testEmptyFileIsEmptyCache() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        Logger logger = Logger.getLogger(LambdaMetafactoryPersistentCacheManager.class.getSimpleName());
+        List<LogRecord> warnings = new CopyOnWriteArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                    warnings.add(record);
+                }
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        logger.addHandler(handler);
+        try {
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+            assertTrue(warnings.isEmpty());
+        } finally {
+            logger.removeHandler(handler);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            Files.write(file, new byte[]{0x4c, 0x4d, 0x46, 0x50, 1, 0, 0, 0, 5, 0, 0});
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+            Files.write(file, "not a cache".getBytes());
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNegativeLengthIsIgnored() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            // One entry, whose declaring class name claims a length of -1
+            Files.write(file, new byte[]{0x4c, 0x4d, 0x46, 0x50, 1, 0, 0, 0, 1, -1, -1, -1, -1, 0, 0, 0, 0});
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testHugeCountIsIgnored() throws Exception {
+        Path file = Files.createTempFile("lambdas", ".bin");
+        try {
+            Files.write(file, new byte[]{0x4c, 0x4d, 0x46, 0x50, 1, 0x7f, -1, -1, -1, 0, 0, 0, 0});
+            assertEquals(0, LambdaMetafactoryPersistentCacheManager.open(file).getLoadedEntryCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -9,12 +9,32 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
 import java.util.function.Supplier;
 import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +49,11 @@ class LambdaMetafactoryWrapperTest {
         return MethodHandles.lookup();
     }
 
+    // False if the wrapper's cache manager hands out a new instance on every call
+    protected boolean cachesWrappers() {
+        return true;
+    }
+
     private static String getGreeting() {
         return "Hello World";
     }
@@ -37,10 +62,58 @@ class LambdaMetafactoryWrapperTest {
         return "Hello, my favorite number is " + i;
     }
 
+    private static int square(int i) {
+        return i * i;
+    }
+
+    private static double weightedSum(int a, long b, double c) {
+        return a + 2 * b + 3 * c;
+    }
+
     private static int intFromTwoStrings(String a, String b) {
         return Objects.hash(a, b);
     }
 
+    abstract static class AbstractGreeter {
+        abstract String greet(String name);
+
+        protected abstract int count();
+
+        String greetAll(String name) {
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < count(); i++) {
+                result.append(greet(name));
+            }
+            return result.toString();
+        }
+    }
+
+    interface Calculator {
+        int add(int a, int b);
+
+        long negate(long a);
+
+        default int addThenNegate(int a, int b) {
+            return (int) negate(add(a, b));
+        }
+    }
+
+    record Person(String name, int age) {
+        static Person named(Object name) {
+            return new Person((String) name, 0);
+        }
+    }
+
+    static class Counter {
+        static int total;
+        private long count;
+        final String name;
+
+        Counter(String name) {
+            this.name = name;
+        }
+    }
+
     private static class InstanceTester {
         private String getGreetingFromInstance() {
             return getGreeting();
@@ -168,4 +241,445 @@ class LambdaMetafactoryWrapperTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPreparedFactoryReusesClass() throws NoSuchMethodException {
+        LambdaMetafactoryWrapper.CapturingFactory<Supplier<String>> factory = createWrapper().prepare(
+                InstanceTester.class.getDeclaredMethod("getGreetingFor", double.class),
+                LambdaMetafactoryWrapper.Shape.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedType(InstanceTester.class)
+                        .addCapturedType(double.class)
+                        .build());
+        InstanceTester tester = new InstanceTester();
+        Supplier<String> first = factory.create(tester, 1.0);
+        Supplier<String> second = factory.create(tester, 2.0);
+        assertSame(first.getClass(), second.getClass());
+        assertEquals(tester.getGreetingFor(1.0), first.get());
+        assertEquals(tester.getGreetingFor(2.0), second.get());
+    }
+
+    @Test
+    public void testPreparedFactoryRejectsWrongReceiverType() {
+        assertThrows(IllegalArgumentException.class, () -> createWrapper().prepare(
+                InstanceTester.class.getDeclaredMethod("getGreetingFromInstance"),
+                LambdaMetafactoryWrapper.Shape.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedType(String.class)
+                        .build()));
+    }
+
+    @Test
+    public void testWrapAsyncCoalescesConcurrentRequests() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        Method method = LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreetingForInt", int.class);
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(42)
+                .build();
+        CompletableFuture<Supplier<String>> first = wrapper.wrapAsync(method, parameters, tasks::add);
+        CompletableFuture<Supplier<String>> second = wrapper.wrapAsync(method, parameters, tasks::add);
+        assertEquals(1, tasks.size());
+        assertFalse(first.isDone());
+        tasks.getFirst().run();
+        assertSame(first.get(), second.get());
+        assertEquals(getGreetingForInt(42), first.get().get());
+    }
+
+    @Test
+    public void testWrapAllAsync() throws Exception {
+        List<Object> wrapped = createWrapper().wrapAllAsync(List.of(
+                new LambdaMetafactoryWrapper.WrapRequest<>(LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreeting"),
+                        LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build()),
+                new LambdaMetafactoryWrapper.WrapRequest<>(
+                        LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreetingForInt", int.class),
+                        LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                                .addCapturedParameter(7)
+                                .build())
+        )).get();
+        assertEquals(getGreeting(), ((Supplier<?>) wrapped.get(0)).get());
+        assertEquals(getGreetingForInt(7), ((Supplier<?>) wrapped.get(1)).get());
+    }
+
+    @Test
+    public void testWrapTieredPromotesAfterThreshold() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        Method method = LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreetingForInt", int.class);
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(5)
+                .build();
+        Supplier<String> cold = wrapper.wrapTiered(method, parameters, 3);
+        assertTrue(MethodHandleProxies.isWrapperInstance(cold));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(getGreetingForInt(5), cold.get());
+        }
+        if (!cachesWrappers()) {
+            assertNotSame(cold, wrapper.wrapTiered(method, parameters, 3));
+            return;
+        }
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        Supplier<String> hot;
+        while (MethodHandleProxies.isWrapperInstance(hot = wrapper.wrapTiered(method, parameters, 3))) {
+            assertTrue(System.nanoTime() < deadline, "Not promoted in time");
+            // A bounded cache may have evicted the cold tier, so promote whichever one it holds now
+            for (int i = 0; i < 3; i++) {
+                hot.get();
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(getGreetingForInt(5), hot.get());
+        assertEquals(getGreetingForInt(5), cold.get());
+    }
+
+    @Test
+    public void testWrapTieredCacheIsClearedAndCollected() throws Exception {
+        LambdaMetafactoryCacheManager cacheManager = LambdaMetafactoryDefaultCacheManager.getInstance();
+        LambdaMetafactoryWrapper wrapper = new LambdaMetafactoryWrapper(getLookup(), cacheManager);
+        Method method = LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreeting");
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build();
+        Supplier<String> first = wrapper.wrapTiered(method, parameters, 3);
+        assertSame(first, wrapper.wrapTiered(method, parameters, 3));
+        cacheManager.clearCaches();
+        assertNotSame(first, wrapper.wrapTiered(method, parameters, 3));
+
+        WeakReference<Method> key = wrapTieredAnonymous(wrapper);
+        for (int i = 0; i < 50 && key.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(key.get());
+    }
+
+    // An anonymous class's members are cached in weak-key maps, so the entry must not keep its own key reachable
+    private static WeakReference<Method> wrapTieredAnonymous(LambdaMetafactoryWrapper wrapper) throws Exception {
+        Object greeter = new Object() {
+            @SuppressWarnings("unused")
+            public String greet() {
+                return "Hi";
+            }
+        };
+        Method greet = greeter.getClass().getMethod("greet");
+        Supplier<String> supplier = wrapper.wrapTiered(greet,
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedParameter(greeter)
+                        .build(), 3);
+        assertEquals("Hi", supplier.get());
+        return new WeakReference<>(greet);
+    }
+
+    @Test
+    public void testWrapTieredRejectsNegativeThreshold() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> createWrapper().wrapTiered(
+                LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreeting"),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build(), -1));
+    }
+
+    @Test
+    public void testWrapSpecialized() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        LambdaMetafactoryWrapper.Specialized<IntUnaryOperator> square = wrapper.wrapSpecialized(
+                LambdaMetafactoryWrapperTest.class.getDeclaredMethod("square", int.class));
+        assertEquals(IntUnaryOperator.class, square.functionalInterface());
+        assertEquals(0, square.boxingConversions());
+        assertEquals(81, square.instance().applyAsInt(9));
+        LambdaMetafactoryWrapper.Specialized<ToIntBiFunction<String, String>> strings = wrapper.wrapSpecialized(
+                LambdaMetafactoryWrapperTest.class.getDeclaredMethod("intFromTwoStrings", String.class, String.class));
+        assertEquals(ToIntBiFunction.class, strings.functionalInterface());
+        assertEquals(intFromTwoStrings("a", "b"), strings.instance().applyAsInt("a", "b"));
+        LambdaMetafactoryWrapper.Specialized<IntFunction<String>> greeting = wrapper.wrapSpecialized(
+                LambdaMetafactoryWrapperTest.class.getDeclaredMethod("getGreetingForInt", int.class));
+        assertEquals(IntFunction.class, greeting.functionalInterface());
+        assertEquals(getGreetingForInt(3), greeting.instance().apply(3));
+    }
+
+    @Test
+    public void testWrapSpecializedGeneratesInterfaceWhenNoneFits() throws Throwable {
+        Method method = LambdaMetafactoryWrapperTest.class.getDeclaredMethod("weightedSum",
+                int.class, long.class, double.class);
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrapSpecialized(method));
+        LambdaMetafactoryWrapper.Specialized<Object> generated = wrapper.wrapSpecialized(method, true);
+        assertTrue(generated.functionalInterface().isInterface());
+        assertEquals(0, generated.boxingConversions());
+        MethodHandle apply = MethodHandles.publicLookup().findVirtual(generated.functionalInterface(), "apply",
+                MethodType.methodType(double.class, int.class, long.class, double.class));
+        assertEquals(weightedSum(1, 2, 3.0), (double) apply.invoke(generated.instance(), 1, 2L, 3.0));
+    }
+
+    @Test
+    public void testParametersAreImmutable() {
+        LambdaMetafactoryWrapper.Parameters.Builder<Supplier<String>> builder
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(1);
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> first = builder.build();
+        int hashCode = first.hashCode();
+        builder.addCapturedParameter(null);
+        assertEquals(List.of(1), first.capturedParameters());
+        assertEquals(hashCode, first.hashCode());
+        assertEquals(2, builder.build().capturedParameters().size());
+        assertThrows(UnsupportedOperationException.class, () -> first.capturedParameters().add(2));
+        assertEquals(first, LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(1).build());
+    }
+
+    @Test
+    public void testIdentityCapture() {
+        List<String> captured = new ArrayList<>(List.of("a", "b"));
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> byIdentity
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .identityCapture(true)
+                .addCapturedParameter(captured)
+                .build();
+        assertEquals(byIdentity, LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .identityCapture(true)
+                .addCapturedParameter(captured)
+                .build());
+        assertNotEquals(byIdentity, LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .identityCapture(true)
+                .addCapturedParameter(new ArrayList<>(captured))
+                .build());
+        assertNotEquals(byIdentity, LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                .addCapturedParameter(captured)
+                .build());
+    }
+
+    @Test
+    public void testDeserializationReusesSpunClass() throws Exception {
+        LambdaMetafactoryWrapper.Parameters<IntSupplier> parameters
+                = LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                .addCapturedParameter("Hello")
+                .addCapturedParameter("world")
+                .serializable(true)
+                .build();
+        IntSupplier original = createWrapper()
+                .wrap(Objects.class.getDeclaredMethod("hash", Object[].class), parameters);
+        Object first = deserialize(serialize(original));
+        Object second = deserialize(serialize(original));
+        assertSame(first.getClass(), second.getClass());
+        assertEquals(original.getAsInt(), ((IntSupplier) first).getAsInt());
+        IntSupplier other = createWrapper().wrap(Objects.class.getDeclaredMethod("hash", Object[].class),
+                LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                        .addCapturedParameter("Goodbye")
+                        .addCapturedParameter("world")
+                        .serializable(true)
+                        .build());
+        Object third = deserialize(serialize(other));
+        assertSame(first.getClass(), third.getClass());
+        assertEquals(other.getAsInt(), ((IntSupplier) third).getAsInt());
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(object);
+            oos.flush();
+            return baos.toByteArray();
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    @Test
+    public void testWrapMethodsAbstractClass() throws Exception {
+        AbstractGreeter greeter = createWrapper().wrapMethods(AbstractGreeter.class, Map.of(
+                AbstractGreeter.class.getDeclaredMethod("greet", String.class),
+                MethodHandles.identity(String.class),
+                AbstractGreeter.class.getDeclaredMethod("count"),
+                MethodHandles.constant(int.class, 2)));
+        assertTrue(greeter.getClass().isHidden());
+        assertEquals(2, greeter.count());
+        assertEquals("HiHi", greeter.greetAll("Hi"));
+    }
+
+    @Test
+    public void testWrapMethodsInterface() throws Exception {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Map<Method, MethodHandle> implementations = Map.of(
+                Calculator.class.getDeclaredMethod("add", int.class, int.class),
+                lookup.findStatic(Math.class, "addExact", MethodType.methodType(int.class, int.class, int.class)),
+                Calculator.class.getDeclaredMethod("negate", long.class),
+                lookup.findStatic(Math.class, "negateExact", MethodType.methodType(long.class, long.class)));
+        Calculator calculator = createWrapper().wrapMethods(Calculator.class, implementations);
+        assertEquals(5, calculator.add(2, 3));
+        assertEquals(-4L, calculator.negate(4L));
+        assertEquals(-5, calculator.addThenNegate(2, 3));
+        assertThrows(ArithmeticException.class, () -> calculator.add(Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    public void testWrapMethodsRequiresEveryAbstractMethod() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> createWrapper().wrapMethods(Calculator.class, Map.of(
+                Calculator.class.getDeclaredMethod("add", int.class, int.class),
+                MethodHandles.publicLookup().findStatic(Math.class, "addExact",
+                        MethodType.methodType(int.class, int.class, int.class)))));
+    }
+
+    @Test
+    public void testWrapSharedUsesOneClassPerDeclaringClass() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        List<Function<Person, Object>> getters = wrapper.wrapShared(List.of(
+                Person.class.getDeclaredMethod("name"), Person.class.getDeclaredMethod("age")), Function.class);
+        Person alice = new Person("Alice", 30);
+        assertEquals("Alice", getters.get(0).apply(alice));
+        assertEquals(30, getters.get(1).apply(alice));
+        assertTrue(getters.get(0).getClass().isHidden());
+        assertSame(getters.get(0).getClass(), getters.get(1).getClass());
+        Function<Object, Person> named = wrapper.wrapShared(Person.class.getDeclaredMethod("named", Object.class),
+                Function.class);
+        assertEquals(new Person("Bob", 0), named.apply("Bob"));
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrapShared(
+                Person.class.getDeclaredMethod("equals", Object.class), Function.class));
+    }
+
+    @Test
+    public void testWrapSharedPrimitives() throws Exception {
+        LambdaMetafactoryWrapper.SharedDispatcher<IntUnaryOperator> dispatcher
+                = createWrapper().getSharedDispatcher(Math.class, IntUnaryOperator.class);
+        assertTrue(dispatcher.targets().size() > 1);
+        Method abs = Math.class.getMethod("abs", int.class);
+        Method negateExact = Math.class.getMethod("negateExact", int.class);
+        assertTrue(dispatcher.canDispatchTo(abs));
+        assertFalse(dispatcher.canDispatchTo(Math.class.getMethod("abs", double.class)));
+        assertEquals(5, dispatcher.get(abs).applyAsInt(-5));
+        assertEquals(-5, dispatcher.get(negateExact).applyAsInt(5));
+        assertSame(dispatcher.get(abs), dispatcher.get(abs));
+    }
+
+    @Test
+    public void testWrapFields() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        Field count = Counter.class.getDeclaredField("count");
+        Field name = Counter.class.getDeclaredField("name");
+        Counter counter = new Counter("first");
+        ObjLongConsumer<Counter> setCount = wrapper.wrapSetter(count,
+                LambdaMetafactoryWrapper.Parameters.<ObjLongConsumer<Counter>>builder(ObjLongConsumer.class).build());
+        setCount.accept(counter, 42L);
+        ToLongFunction<Counter> getCount = wrapper.wrapGetter(count,
+                LambdaMetafactoryWrapper.Parameters.<ToLongFunction<Counter>>builder(ToLongFunction.class).build());
+        assertEquals(42L, getCount.applyAsLong(counter));
+        Supplier<String> getName = wrapper.wrapGetter(name,
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedParameter(counter)
+                        .build());
+        assertEquals("first", getName.get());
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrapSetter(name,
+                LambdaMetafactoryWrapper.Parameters.<BiConsumer<Counter, String>>builder(BiConsumer.class).build()));
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrapGetter(count,
+                LambdaMetafactoryWrapper.Parameters.<LongSupplier>builder(LongSupplier.class)
+                        .addCapturedParameter("not a counter")
+                        .build()));
+    }
+
+    @Test
+    public void testWrapStaticFieldAccessModes() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        Field total = Counter.class.getDeclaredField("total");
+        IntConsumer setTotal = wrapper.wrapSetter(total,
+                LambdaMetafactoryWrapper.Parameters.<IntConsumer>builder(IntConsumer.class).build());
+        setTotal.accept(10);
+        IntUnaryOperator getAndAdd = wrapper.wrapField(total, VarHandle.AccessMode.GET_AND_ADD,
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class).build());
+        assertEquals(10, getAndAdd.applyAsInt(5));
+        VarHandle handle = MethodHandles.lookup().findStaticVarHandle(Counter.class, "total", int.class);
+        IntSupplier getVolatile = wrapper.wrapVarHandle(handle, VarHandle.AccessMode.GET_VOLATILE,
+                LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class).build());
+        assertEquals(15, getVolatile.getAsInt());
+        assertTrue(getVolatile.getClass().isHidden());
+    }
+
+    @Test
+    public void testWrapSwappable() throws Exception {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        SwappableLambda<IntUnaryOperator> swappable = wrapper.wrapSwappable(
+                Math.class.getMethod("abs", int.class),
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class).build());
+        IntUnaryOperator instance = swappable.instance();
+        assertEquals(3, instance.applyAsInt(-3));
+        swappable.swap(Math.class.getMethod("negateExact", int.class));
+        assertSame(instance, swappable.instance());
+        assertEquals(3, instance.applyAsInt(-3));
+        assertEquals(-3, instance.applyAsInt(3));
+        swappable.swap(Math.class.getMethod("max", int.class, int.class), 10);
+        assertEquals(10, instance.applyAsInt(3));
+        assertThrows(IllegalArgumentException.class,
+                () -> swappable.swap(MethodHandles.constant(String.class, "not an int")));
+        assertEquals(10, instance.applyAsInt(3));
+    }
+
+    @Test
+    public void testWrapSwappableSwitchPoint() throws Exception {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        SwappableLambda<Supplier<String>> swappable = createWrapper().wrapSwappable(
+                MethodHandles.constant(String.class, "initial"),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build());
+        Supplier<String> instance = swappable.instance();
+        assertEquals("initial", instance.get());
+        SwitchPoint switchPoint = new SwitchPoint();
+        swappable.swap(MethodHandles.insertArguments(
+                        lookup.findStatic(String.class, "valueOf", MethodType.methodType(String.class, int.class)), 0, 1),
+                switchPoint, MethodHandles.constant(String.class, "fallback"));
+        assertEquals("1", instance.get());
+        SwitchPoint.invalidateAll(new SwitchPoint[]{switchPoint});
+        assertEquals("fallback", instance.get());
+    }
+
+    @Test
+    public void testWrapNonDirectMethodHandle() throws Exception {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        MethodHandle concat = lookup.findVirtual(String.class, "concat",
+                MethodType.methodType(String.class, String.class));
+        MethodHandle length = lookup.findVirtual(String.class, "length", MethodType.methodType(int.class));
+        MethodHandle concatLength = MethodHandles.filterReturnValue(
+                MethodHandles.insertArguments(concat, 1, "suffix"), length);
+        ToIntBiFunction<String, Object> wrapped = wrapper.wrapMethodHandle(
+                MethodHandles.dropArguments(concatLength, 1, Object.class),
+                LambdaMetafactoryWrapper.Parameters.<ToIntBiFunction<String, Object>>builder(ToIntBiFunction.class)
+                        .build());
+        assertEquals(9, wrapped.applyAsInt("abc", "ignored"));
+        assertTrue(wrapped.getClass().isHidden());
+        MethodHandle isEmpty = lookup.findVirtual(String.class, "isEmpty", MethodType.methodType(boolean.class));
+        IntSupplier guarded = wrapper.wrapMethodHandle(
+                MethodHandles.guardWithTest(isEmpty, MethodHandles.dropArguments(
+                        MethodHandles.constant(int.class, -1), 0, String.class), length),
+                LambdaMetafactoryWrapper.Parameters.<IntSupplier>builder(IntSupplier.class)
+                        .addCapturedParameter("")
+                        .build());
+        assertEquals(-1, guarded.getAsInt());
+        IntSupplier prepared = wrapper.prepareMethodHandle(MethodHandles.constant(int.class, 42),
+                LambdaMetafactoryWrapper.Shape.<IntSupplier>builder(IntSupplier.class).build()).create();
+        assertEquals(42, prepared.getAsInt());
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrapMethodHandle(concatLength,
+                LambdaMetafactoryWrapper.Parameters.<ToIntFunction<String>>builder(ToIntFunction.class)
+                        .serializable(true)
+                        .build()));
+    }
+
+    @Test
+    public void testNonDirectMethodHandleIsNotPinned() throws Exception {
+        // Held throughout, as a caller would hold a constant Parameters, so that only the handle can be collected
+        LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters
+                = LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class).build();
+        WeakReference<MethodHandle> handle = wrapNonDirectHandle(createWrapper(), parameters);
+        for (int i = 0; i < 50 && handle.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(handle.get());
+        assertNotNull(parameters);
+    }
+
+    // The forwarder's class data holds the handle, so a cache keyed by the handle would keep it reachable
+    private static WeakReference<MethodHandle> wrapNonDirectHandle(
+            LambdaMetafactoryWrapper wrapper, LambdaMetafactoryWrapper.Parameters<Supplier<String>> parameters) {
+        MethodHandle constant = MethodHandles.constant(Object.class, "pinned?");
+        Supplier<String> wrapped = wrapper.wrapMethodHandle(constant, parameters);
+        assertEquals("pinned?", wrapped.get());
+        return new WeakReference<>(constant);
+    }
+}
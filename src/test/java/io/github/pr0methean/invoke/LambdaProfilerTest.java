@@ -0,0 +1,100 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LambdaProfilerTest {
+    public static int half(int value) {
+        if (value % 2 != 0) {
+            throw new IllegalArgumentException("odd");
+        }
+        return value / 2;
+    }
+
+    public static int quarter(int value) {
+        return value / 4;
+    }
+
+    private static LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup());
+    }
+
+    @Test
+    public void testCountsInvocationsAndExceptions() throws Exception {
+        Method half = LambdaProfilerTest.class.getMethod("half", int.class);
+        IntUnaryOperator profiled = createWrapper().wrap(half,
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .profiled(true)
+                        .build());
+        assertEquals(2, profiled.applyAsInt(4));
+        assertEquals(3, profiled.applyAsInt(6));
+        assertThrows(IllegalArgumentException.class, () -> profiled.applyAsInt(5));
+        LambdaProfiler.Snapshot snapshot = LambdaProfiler.snapshot(half);
+        assertEquals(3, snapshot.invocations());
+        assertEquals(1, snapshot.exceptions());
+        assertTrue(LambdaProfiler.snapshot().containsKey(half));
+    }
+
+    @Test
+    public void testUnprofiledIsUnchanged() throws Exception {
+        Method half = LambdaProfilerTest.class.getMethod("half", int.class);
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        IntUnaryOperator plain = wrapper.wrap(half, IntUnaryOperator.class);
+        IntUnaryOperator profiled = wrapper.wrap(half,
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .profiled(true)
+                        .build());
+        assertNotSame(plain.getClass(), profiled.getClass());
+        assertThrows(IllegalArgumentException.class, () -> wrapper.wrap(half,
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .profiled(true)
+                        .serializable(true)
+                        .build()));
+    }
+
+    @Test
+    public void testCountsOutliveTheWrappedMethodObject() throws Exception {
+        IntUnaryOperator profiled = createWrapper().wrap(LambdaProfilerTest.class.getMethod("quarter", int.class),
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .profiled(true)
+                        .build());
+        assertEquals(1, profiled.applyAsInt(4));
+        // Nothing holds the Method that was wrapped any more
+        LambdaMetafactoryDefaultCacheManager.getInstance().clearCaches();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // Another profiled wrap, which would expunge entries whose keys were collected
+        createWrapper().wrap(LambdaProfilerTest.class.getMethod("half", int.class),
+                LambdaMetafactoryWrapper.Parameters.<IntUnaryOperator>builder(IntUnaryOperator.class)
+                        .profiled(true)
+                        .build());
+        assertEquals(2, profiled.applyAsInt(8));
+        Method quarter = LambdaProfilerTest.class.getMethod("quarter", int.class);
+        assertEquals(2, LambdaProfiler.snapshot(quarter).invocations());
+        assertEquals(2, LambdaProfiler.snapshot().get(quarter).invocations());
+    }
+
+    @Test
+    public void testMethodHandle() throws Exception {
+        MethodHandle concat = MethodHandles.lookup().findVirtual(String.class, "concat",
+                MethodType.methodType(String.class, String.class));
+        Supplier<String> profiled = createWrapper().wrapMethodHandle(concat,
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedParameter("a")
+                        .addCapturedParameter("b")
+                        .profiled(true)
+                        .build());
+        assertEquals("ab", profiled.get());
+        assertEquals(1, LambdaProfiler.snapshot(concat).invocations());
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineBuilderTest {
+    private static LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup());
+    }
+
+    @Test
+    public void testMapFilterTee() throws Exception {
+        List<Object> seen = new ArrayList<>();
+        MethodHandle isEmpty = MethodHandles.lookup().findVirtual(String.class, "isEmpty",
+                MethodType.methodType(boolean.class));
+        ToIntFunction<String> pipeline = createWrapper().pipeline(String.class)
+                .map(String.class.getMethod("trim"))
+                .filter(MethodHandles.filterReturnValue(isEmpty, MethodHandles.lookup().findStatic(
+                        PipelineBuilderTest.class, "not", MethodType.methodType(boolean.class, boolean.class))))
+                .tee(List.class.getMethod("add", Object.class), seen)
+                .map(String.class.getMethod("length"))
+                .map(Math.class.getMethod("multiplyExact", int.class, int.class), 10)
+                .build(ToIntFunction.class);
+        assertEquals(30, pipeline.applyAsInt("  abc "));
+        assertEquals(0, pipeline.applyAsInt("   "));
+        assertEquals(List.of("abc"), seen);
+        assertTrue(pipeline.getClass().isHidden());
+    }
+
+    @Test
+    public void testGuard() throws Exception {
+        MethodHandle isEmpty = MethodHandles.lookup().findVirtual(String.class, "isEmpty",
+                MethodType.methodType(boolean.class));
+        Function<String, String> pipeline = createWrapper().pipeline(String.class)
+                .guard(isEmpty, MethodHandles.dropArguments(MethodHandles.constant(String.class, "not empty"), 0,
+                        String.class))
+                .map(String.class.getMethod("concat", String.class), "prefix")
+                .build(Function.class);
+        assertEquals("prefix", pipeline.apply(""));
+        assertEquals("not empty", pipeline.apply("x"));
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        PipelineBuilder builder = createWrapper().pipeline(int.class);
+        assertThrows(IllegalArgumentException.class, () -> builder.map(String.class.getMethod("trim")));
+        assertThrows(IllegalArgumentException.class, () -> builder.map(Math.class.getMethod("max", int.class,
+                int.class)));
+    }
+
+    public static boolean not(boolean value) {
+        return !value;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompiledLambdaFactoryTest {
+    static class Annotated implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String name;
+
+        @WrapAs(Function.class)
+        Annotated(String name) {
+            this.name = name;
+        }
+
+        @WrapAs({Function.class, Supplier.class})
+        String greet(String greeting) {
+            return greeting + ", " + name;
+        }
+
+        @WrapAs(ToIntFunction.class)
+        static int length(String s) {
+            return s.length();
+        }
+
+        static String notAnnotated(String s) {
+            return s;
+        }
+    }
+
+    private static LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup(), LambdaMetafactoryNoopCacheManager.getInstance());
+    }
+
+    @Test
+    public void testStaticMethodIsPrecompiled() throws NoSuchMethodException {
+        ToIntFunction<String> length = createWrapper().wrap(
+                Annotated.class.getDeclaredMethod("length", String.class), ToIntFunction.class);
+        assertFalse(length.getClass().isHidden());
+        assertEquals(5, length.applyAsInt("Hello"));
+        assertSame(length, createWrapper().wrap(
+                Annotated.class.getDeclaredMethod("length", String.class), ToIntFunction.class));
+    }
+
+    @Test
+    public void testConstructorIsPrecompiled() throws NoSuchMethodException {
+        Function<String, Annotated> constructor = createWrapper().wrap(
+                Annotated.class.getDeclaredConstructor(String.class), Function.class);
+        assertFalse(constructor.getClass().isHidden());
+        assertEquals("World", constructor.apply("World").name);
+    }
+
+    @Test
+    public void testCapturingInstanceMethodIsPrecompiled() throws NoSuchMethodException {
+        Supplier<String> supplier = createWrapper().wrap(Annotated.class.getDeclaredMethod("greet", String.class),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedParameter(new Annotated("World"))
+                        .addCapturedParameter("Hello")
+                        .build());
+        assertFalse(supplier.getClass().isHidden());
+        assertEquals("Hello, World", supplier.get());
+        Function<String, String> function = createWrapper().wrap(Annotated.class.getDeclaredMethod("greet", String.class),
+                LambdaMetafactoryWrapper.Parameters.<Function<String, String>>builder(Function.class)
+                        .addCapturedParameter(new Annotated("World"))
+                        .build());
+        assertFalse(function.getClass().isHidden());
+        assertEquals("Hi, World", function.apply("Hi"));
+    }
+
+    @Test
+    public void testSerializableFallsBackToSpinning() throws NoSuchMethodException, IOException, ClassNotFoundException {
+        Supplier<String> original = createWrapper().wrap(Annotated.class.getDeclaredMethod("greet", String.class),
+                LambdaMetafactoryWrapper.Parameters.<Supplier<String>>builder(Supplier.class)
+                        .addCapturedParameter(new Annotated("World"))
+                        .addCapturedParameter("Hello")
+                        .serializable(true)
+                        .build());
+        // Spun by LambdaMetafactory, so that it has a SerializedLambda form
+        assertTrue(original.getClass().isHidden());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompactLambdaCodec.Writer writer = CompactLambdaCodec.newWriter(bytes)) {
+            writer.write(original);
+        }
+        try (CompactLambdaCodec.Reader reader = CompactLambdaCodec.newReader(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            Supplier<String> copy = (Supplier<String>) reader.read();
+            assertEquals(original.get(), copy.get());
+        }
+    }
+
+    @Test
+    public void testFallsBackToSpinning() throws NoSuchMethodException {
+        Function<String, String> function = createWrapper().wrap(
+                Annotated.class.getDeclaredMethod("notAnnotated", String.class), Function.class);
+        assertTrue(function.getClass().isHidden());
+        assertEquals("Hello", function.apply("Hello"));
+    }
+}
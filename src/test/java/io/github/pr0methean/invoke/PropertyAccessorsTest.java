@@ -0,0 +1,90 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertyAccessorsTest {
+    record Point(int x, long y, String label) {}
+
+    static class Account {
+        private String owner;
+        private double balance;
+        private boolean active;
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public void setOwner(String owner) {
+            this.owner = owner;
+        }
+
+        public double getBalance() {
+            return balance;
+        }
+
+        public void setBalance(double balance) {
+            this.balance = balance;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public int getOwnerLength() {
+            return owner.length();
+        }
+    }
+
+    private static LambdaMetafactoryWrapper createWrapper() {
+        return new LambdaMetafactoryWrapper(MethodHandles.lookup());
+    }
+
+    @Test
+    public void testRecord() {
+        PropertyAccessors<Point> accessors = createWrapper().getPropertyAccessors(Point.class);
+        assertEquals(List.of("x", "y", "label"), accessors.names());
+        Point point = new Point(1, 2L, "p");
+        assertEquals(1, accessors.intGetter(accessors.indexOf("x")).applyAsInt(point));
+        assertEquals(2L, accessors.longGetter(accessors.indexOf("y")).applyAsLong(point));
+        assertEquals("p", accessors.getter(accessors.indexOf("label")).apply(point));
+        assertEquals(1, accessors.getter(0).apply(point));
+        assertFalse(accessors.isWritable(0));
+        assertThrows(IllegalArgumentException.class, () -> accessors.setter(0));
+        assertThrows(IllegalArgumentException.class, () -> accessors.longGetter(0));
+        assertEquals(point, accessors.newInstance(1, 2L, "p"));
+        assertSame(accessors.getter(0).getClass(), accessors.getter(2).getClass());
+    }
+
+    @Test
+    public void testBean() {
+        PropertyAccessors<Account> accessors = createWrapper().getPropertyAccessors(Account.class);
+        assertEquals(List.of("active", "balance", "owner", "ownerLength"), accessors.names());
+        assertEquals(double.class, accessors.propertyType(1));
+        assertFalse(accessors.isWritable(accessors.indexOf("ownerLength")));
+        assertEquals(-1, accessors.indexOf("class"));
+        Account account = new Account();
+        accessors.setter(accessors.indexOf("owner")).accept(account, "Alice");
+        accessors.doubleSetter(accessors.indexOf("balance")).accept(account, 12.5);
+        accessors.setter(accessors.indexOf("active")).accept(account, true);
+        assertEquals("Alice", account.getOwner());
+        assertEquals(12.5, accessors.doubleGetter(1).applyAsDouble(account));
+        assertEquals(true, accessors.getter(0).apply(account));
+        assertEquals(5, accessors.intGetter(accessors.indexOf("ownerLength")).applyAsInt(account));
+        assertThrows(UnsupportedOperationException.class, () -> accessors.newInstance(true, 1.0, "Bob", 3));
+    }
+
+    @Test
+    public void testCached() {
+        LambdaMetafactoryWrapper wrapper = createWrapper();
+        assertSame(wrapper.getPropertyAccessors(Point.class), wrapper.getPropertyAccessors(Point.class));
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.pr0methean.invoke;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    @Test
+    public void testConcurrentMissesShareOneComputation() throws Exception {
+        SingleFlight.ConcurrentCache<String, Object> cache = new SingleFlight.ConcurrentCache<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> cache.computeIfAbsent("key", key -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return new Object();
+            }), executor);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> cache.computeIfAbsent("key", key -> {
+                computations.incrementAndGet();
+                return new Object();
+            }), executor);
+            // Another key isn't blocked behind the slow one
+            assertEquals("other", cache.computeIfAbsent("other key", key -> "other"));
+            release.countDown();
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    public void testFailureReachesWaitersAndIsNotCached() {
+        ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
+        assertThrows(IllegalArgumentException.class, () -> SingleFlight.computeIfAbsent(cache, "key", key -> {
+            throw new IllegalArgumentException();
+        }));
+        assertTrue(cache.isEmpty());
+        assertEquals("value", SingleFlight.computeIfAbsent(cache, "key", key -> "value"));
+    }
+
+    @Test
+    public void testRecursiveUpdate() {
+        SingleFlight.ConcurrentCache<String, String> cache = new SingleFlight.ConcurrentCache<>();
+        assertThrows(IllegalStateException.class,
+                () -> cache.computeIfAbsent("key", key -> cache.computeIfAbsent("key", key_ -> "inner")));
+    }
+
+    @Test
+    public void testWeakKeyMap() {
+        ConcurrentWeakKeyMap<String, String> map = new ConcurrentWeakKeyMap<>(null, true);
+        String key = "key";
+        assertEquals("value", map.computeIfAbsent(key, k -> "value"));
+        assertEquals("value", map.computeIfAbsent(key, k -> "other"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.pr0methean.invoke;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Loaded in an isolated class loader by {@link LambdaMetafactoryClassValueCacheTest}, so it must not refer to any
+ * other class in this project.
+ */
+public class UnloadableTarget {
+    public static String greet() {
+        return "Hello";
+    }
+
+    public static MethodHandles.Lookup lookup() {
+        return MethodHandles.lookup();
+    }
+}